@@ -0,0 +1,98 @@
+#!/bin/bash
+
+# 用本机的两个 MySQL 兼容实例验证只读副本路由:
+# 一个作为主库, 一个声明为副本, 查询应发往副本; 写操作之后, 事务中, 以及读写会话状态(变量, 临时表等)的读请求应留在主库
+# 两个实例之间不需要配置复制, 脚本以 app.replica.allow-unknown-lag=true 启动服务(默认为 false)
+#
+# 用法: PRIMARY_PORT=3306 REPLICA_PORT=3307 MYSQL_USER=root MYSQL_PASSWORD=root ./replica-check.sh [jar路径]
+
+APP_JAR=${1:-mysql-service/target/mysql-service-1.0-SNAPSHOT.jar}
+MYSQL_HOST=${MYSQL_HOST:-127.0.0.1}
+PRIMARY_PORT=${PRIMARY_PORT:-3306}
+REPLICA_PORT=${REPLICA_PORT:-3307}
+MYSQL_USER=${MYSQL_USER:-root}
+MYSQL_PASSWORD=${MYSQL_PASSWORD:-root}
+PORT=18080
+LOG_FILE=$(mktemp)
+
+# 本地验证用的会话密钥(至少 32 个字符)
+export SESSION_SECRET=${SESSION_SECRET:-replica-check-session-secret-0123456789}
+
+java -jar "$APP_JAR" --server.port=$PORT --app.replica.read-after-write-window=5000 \
+    --app.replica.allow-unknown-lag=true > "$LOG_FILE" 2>&1 &
+PID=$!
+trap 'kill $PID 2>/dev/null' EXIT
+
+for i in $(seq 1 60); do
+    if curl -s -o /dev/null "http://localhost:$PORT/api/downloads"; then
+        break
+    fi
+    sleep 1
+done
+
+TOKEN=$(curl -s -X POST "http://localhost:$PORT/api/connect" \
+    -H "Content-Type: application/json" \
+    -d "{\"host\":\"$MYSQL_HOST\",\"port\":$PRIMARY_PORT,\"username\":\"$MYSQL_USER\",\"password\":\"$MYSQL_PASSWORD\",
+         \"replicas\":[{\"host\":\"$MYSQL_HOST\",\"port\":$REPLICA_PORT}]}" \
+    | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')
+if [ -z "$TOKEN" ]; then
+    echo "FAIL connect, see $LOG_FILE"
+    exit 1
+fi
+
+query() {
+    curl -s -o /dev/null -X POST "http://localhost:$PORT/api/query" \
+        -H "Authorization: Bearer $TOKEN" -H "Content-Type: application/json" \
+        -d "{\"query\":\"$1\"}"
+}
+
+routed() {
+    curl -s "http://localhost:$PORT/api/replica/metrics" | grep -o '"routed":[0-9]*' | cut -d: -f2
+}
+
+FAILED=0
+expect() {
+    if [ "$1" = "$2" ]; then
+        echo "OK   $3"
+    else
+        echo "FAIL $3 (expected $2 replica reads, got $1)"
+        FAILED=1
+    fi
+}
+
+for i in $(seq 1 10); do
+    query "SELECT 1"
+done
+expect "$(routed)" 10 "SELECT routed to the replica"
+
+query "DO 0"
+for i in $(seq 1 5); do
+    query "SELECT 1"
+done
+expect "$(routed)" 10 "reads stay on the primary right after a write"
+
+sleep 6
+query "SELECT 1"
+expect "$(routed)" 11 "reads return to the replica after the read-after-write window"
+
+query "START TRANSACTION"
+sleep 6
+query "SELECT 1"
+expect "$(routed)" 11 "reads stay on the primary while a transaction is open"
+
+query "COMMIT"
+sleep 6
+query "SELECT 1"
+expect "$(routed)" 12 "reads return to the replica after the transaction ends"
+
+query "SELECT LAST_INSERT_ID()"
+expect "$(routed)" 12 "reads of session state stay on the primary"
+
+query "SET @v = 1"
+sleep 6
+query "SELECT 1"
+expect "$(routed)" 12 "reads stay on the primary after the session sets a variable"
+
+curl -s "http://localhost:$PORT/api/replica/metrics"
+echo
+exit $FAILED
@@ -12,6 +12,13 @@ APP_HOME=/home/java
 APP_NAME=mysql-service-1.0-SNAPSHOT.jar
 APP_LOG=$APP_HOME/logs
 
+# 会话密钥没有默认值, 须在环境中提供(所有节点一致, 至少 32 个字符)
+if [ -z "$SESSION_SECRET" ]; then
+    echo "SESSION_SECRET is not set"
+    exit 1
+fi
+export SESSION_SECRET
+
 # 创建日志目录
 mkdir -p $APP_LOG
 
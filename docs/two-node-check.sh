@@ -0,0 +1,71 @@
+#!/bin/bash
+
+# 在本机启动两个 mysql-service 实例, 验证令牌可以跨节点使用:
+# 在节点 A 上连接, 在节点 B 上查询, 然后重启节点 A 再次查询
+#
+# 用法: MYSQL_HOST=127.0.0.1 MYSQL_PORT=3306 MYSQL_USER=root MYSQL_PASSWORD=root ./two-node-check.sh [jar路径]
+
+APP_JAR=${1:-mysql-service/target/mysql-service-1.0-SNAPSHOT.jar}
+MYSQL_HOST=${MYSQL_HOST:-127.0.0.1}
+MYSQL_PORT=${MYSQL_PORT:-3306}
+MYSQL_USER=${MYSQL_USER:-root}
+MYSQL_PASSWORD=${MYSQL_PASSWORD:-root}
+PORT_A=18080
+PORT_B=18081
+LOG_DIR=$(mktemp -d)
+
+# 两个节点必须使用相同的会话密钥(至少 32 个字符)
+export SESSION_SECRET=${SESSION_SECRET:-two-node-check-session-secret-0123456789}
+
+start_node() {
+    java -jar "$APP_JAR" --server.port=$1 > "$LOG_DIR/node-$1.log" 2>&1 &
+    echo $!
+}
+
+wait_ready() {
+    for i in $(seq 1 60); do
+        if curl -s -o /dev/null "http://localhost:$1/api/downloads"; then
+            return 0
+        fi
+        sleep 1
+    done
+    echo "Node on port $1 failed to start, see $LOG_DIR/node-$1.log"
+    exit 1
+}
+
+check() {
+    status=$(curl -s -o /dev/null -w "%{http_code}" -H "Authorization: Bearer $TOKEN" "http://localhost:$1/api/databases")
+    if [ "$status" = "200" ]; then
+        echo "OK   $2"
+    else
+        echo "FAIL $2 (HTTP $status)"
+        FAILED=1
+    fi
+}
+
+PID_A=$(start_node $PORT_A)
+PID_B=$(start_node $PORT_B)
+trap 'kill $PID_A $PID_B 2>/dev/null' EXIT
+wait_ready $PORT_A
+wait_ready $PORT_B
+
+TOKEN=$(curl -s -X POST "http://localhost:$PORT_A/api/connect" \
+    -H "Content-Type: application/json" \
+    -d "{\"host\":\"$MYSQL_HOST\",\"port\":$MYSQL_PORT,\"username\":\"$MYSQL_USER\",\"password\":\"$MYSQL_PASSWORD\"}" \
+    | sed -n 's/.*"token":"\([^"]*\)".*/\1/p')
+if [ -z "$TOKEN" ]; then
+    echo "FAIL connect on node A"
+    exit 1
+fi
+
+FAILED=0
+check $PORT_A "query on node A (connected node)"
+check $PORT_B "query on node B (other node)"
+
+kill $PID_A
+wait $PID_A 2>/dev/null
+PID_A=$(start_node $PORT_A)
+wait_ready $PORT_A
+check $PORT_A "query on node A after restart"
+
+exit $FAILED
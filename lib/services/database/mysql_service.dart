@@ -152,13 +152,19 @@ class MySqlService extends GetxService implements DatabaseService {
   Future<void> selectDatabase(String database) async {
     try {
       // 发送选择数据库请求
-      await _dio.post(
+      final response = await _dio.post(
         '/select-database',
         data: {'database': database},
         options: Options(
           headers: {'Authorization': 'Bearer $_token'},
         ),
       );
+
+      // 服务端返回携带所选数据库的新令牌, 请求落到其他节点时也能使用该数据库
+      final token = response.data['token'];
+      if (token != null) {
+        _token = token;
+      }
     } catch (e) {
       throw HttpUtils.handleError(e);
     }
@@ -294,6 +300,11 @@ class MySqlService extends GetxService implements DatabaseService {
       if (response.data is Map<String, dynamic>) {
         final data = response.data;
 
+        // 结果已经开始返回后查询失败, 状态码仍为 200, 错误信息在 error 字段中
+        if (data['error'] != null) {
+          throw Exception(data['error']);
+        }
+
         // 如果是非SELECT语句且有affectedRows字段
         if (!isSelect && data['affectedRows'] != null) {
           return {
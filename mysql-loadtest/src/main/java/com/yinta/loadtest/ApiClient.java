@@ -0,0 +1,130 @@
+package com.yinta.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/// mysql-service REST 接口的简单客户端, 每个压测线程一个实例
+public class ApiClient {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final String baseUrl;
+    private final byte[] buffer = new byte[64 * 1024];
+
+    public ApiClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public static class Response {
+        public final int status;
+        public final byte[] body;
+
+        Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+
+    public String connect(int port, String database) throws IOException {
+        Map<String, Object> request = new HashMap<>();
+        request.put("host", "localhost");
+        request.put("port", port);
+        request.put("username", "root");
+        request.put("password", "");
+        request.put("database", database);
+        Response response = post("/api/connect", null, request, true);
+        if (!response.isSuccess()) {
+            throw new IOException("Connect failed with HTTP " + response.status);
+        }
+        return (String) OBJECT_MAPPER.readValue(response.body, Map.class).get("token");
+    }
+
+    public Response disconnect(String token) throws IOException {
+        return post("/api/disconnect", token, new HashMap<>(), false);
+    }
+
+    public Response tables(String token, String database) throws IOException {
+        return get("/api/tables?database=" + URLEncoder.encode(database, "UTF-8") + "&offset=0&limit=50", token);
+    }
+
+    public Response query(String token, String sql) throws IOException {
+        Map<String, String> request = new HashMap<>();
+        request.put("query", sql);
+        return post("/api/query", token, request, false);
+    }
+
+    public Response exportCsv(String token, String sql) throws IOException {
+        Map<String, String> request = new HashMap<>();
+        request.put("query", sql);
+        request.put("filename", "loadtest");
+        return post("/api/export/csv", token, request, false);
+    }
+
+    /// 服务端的近似分配总量和 GC 统计, 见 /api/jvm/metrics
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> jvmMetrics() throws IOException {
+        HttpURLConnection connection = open("/api/jvm/metrics", null);
+        Response response = read(connection, true);
+        if (!response.isSuccess()) {
+            throw new IOException("JVM metrics failed with HTTP " + response.status);
+        }
+        return OBJECT_MAPPER.readValue(response.body, Map.class);
+    }
+
+    private Response get(String path, String token) throws IOException {
+        HttpURLConnection connection = open(path, token);
+        return read(connection, false);
+    }
+
+    private Response post(String path, String token, Object body, boolean keepBody) throws IOException {
+        HttpURLConnection connection = open(path, token);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "application/json");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(OBJECT_MAPPER.writeValueAsBytes(body));
+        }
+        return read(connection, keepBody);
+    }
+
+    private HttpURLConnection open(String path, String token) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(5_000);
+        connection.setReadTimeout(120_000);
+        if (token != null) {
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+        }
+        return connection;
+    }
+
+    // 完整读取响应体, 以便复用 keep-alive 连接; 只有需要时才保留内容
+    private Response read(HttpURLConnection connection, boolean keepBody) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream body = keepBody ? new ByteArrayOutputStream() : null;
+        if (in != null) {
+            try (InputStream stream = in) {
+                int n;
+                while ((n = stream.read(buffer)) != -1) {
+                    if (body != null) {
+                        body.write(buffer, 0, n);
+                    }
+                }
+            }
+        }
+        return new Response(status, body != null ? body.toByteArray() : new byte[0]);
+    }
+}
@@ -0,0 +1,120 @@
+package com.yinta.loadtest;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Random;
+
+/// 嵌入式 MariaDB (兼容 MySQL 协议), 启动后按固定随机种子生成测试数据, 保证每次运行的数据一致
+public class EmbeddedDatabase implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedDatabase.class);
+    private static final String[] STATUSES = {"NEW", "PAID", "SHIPPED", "DELIVERED", "CANCELLED"};
+
+    private final LoadTestConfig config;
+    private DB db;
+
+    public EmbeddedDatabase(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    public void start() throws Exception {
+        DBConfigurationBuilder builder = DBConfigurationBuilder.newBuilder();
+        builder.setPort(config.getInt("db.port"));
+        for (String arg : config.get("db.args").split("\\s+")) {
+            if (!arg.isEmpty()) {
+                builder.addArg(arg);
+            }
+        }
+        db = DB.newEmbeddedDB(builder.build());
+        db.start();
+        // 通过 JDBC 建库, 不依赖 MariaDB4j 自带的 mysql 命令行客户端(需要系统中的 libncurses5)
+        String url = String.format("jdbc:mysql://localhost:%d/?useSSL=false", config.getInt("db.port"));
+        try (Connection connection = DriverManager.getConnection(url, "root", "");
+             Statement stmt = connection.createStatement()) {
+            stmt.executeUpdate("CREATE DATABASE IF NOT EXISTS `" + config.get("db.name") + "`");
+        }
+        log.info("Embedded MariaDB started on port {}", config.getInt("db.port"));
+        seed();
+    }
+
+    public int getPort() {
+        return config.getInt("db.port");
+    }
+
+    private void seed() throws SQLException {
+        String url = String.format("jdbc:mysql://localhost:%d/%s?useSSL=false&rewriteBatchedStatements=true",
+                config.getInt("db.port"), config.get("db.name"));
+        int tables = config.getInt("seed.tables");
+        int rows = config.getInt("seed.rows");
+        Random random = new Random(config.getLong("random.seed"));
+        long baseTime = 1704067200000L; // 2024-01-01T00:00:00Z
+
+        try (Connection connection = DriverManager.getConnection(url, "root", "")) {
+            for (int t = 0; t < tables; t++) {
+                String table = tableName(t);
+                try (Statement stmt = connection.createStatement()) {
+                    stmt.executeUpdate("CREATE TABLE " + table + " ("
+                            + "id BIGINT PRIMARY KEY, "
+                            + "customer VARCHAR(64) NOT NULL, "
+                            + "status VARCHAR(16) NOT NULL, "
+                            + "amount DECIMAL(12,2) NOT NULL, "
+                            + "quantity INT NOT NULL, "
+                            + "note TEXT, "
+                            + "created_at DATETIME NOT NULL, "
+                            + "KEY idx_customer (customer))");
+                }
+                connection.setAutoCommit(false);
+                try (PreparedStatement insert = connection.prepareStatement("INSERT INTO " + table
+                        + " (id, customer, status, amount, quantity, note, created_at) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                    for (int i = 0; i < rows; i++) {
+                        insert.setLong(1, i + 1);
+                        insert.setString(2, "customer_" + random.nextInt(5000));
+                        insert.setString(3, STATUSES[random.nextInt(STATUSES.length)]);
+                        insert.setBigDecimal(4, java.math.BigDecimal.valueOf(random.nextInt(10_000_000), 2));
+                        insert.setInt(5, 1 + random.nextInt(20));
+                        insert.setString(6, random.nextInt(4) == 0 ? null : "note " + Long.toHexString(random.nextLong()));
+                        insert.setTimestamp(7, new Timestamp(baseTime + random.nextInt(365 * 24 * 3600) * 1000L));
+                        insert.addBatch();
+                        if (i % 1000 == 999) {
+                            insert.executeBatch();
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ANALYZE TABLE " + String.join(", ", tableNames(tables)));
+            }
+        }
+        log.info("Seeded {} tables with {} rows each", tables, rows);
+    }
+
+    private static String[] tableNames(int tables) {
+        String[] names = new String[tables];
+        for (int t = 0; t < tables; t++) {
+            names[t] = tableName(t);
+        }
+        return names;
+    }
+
+    public static String tableName(int index) {
+        return "orders_" + index;
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (db != null) {
+            db.stop();
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package com.yinta.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/// 按配置的请求组合和并发级别施压
+/// 每个并发级别先预热再计时, 每个线程使用独立的随机序列和直方图, 结束后合并
+public class LoadGenerator {
+    private static final Logger log = LoggerFactory.getLogger(LoadGenerator.class);
+    // 延迟以微秒记录, 超过一分钟的按一分钟计
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final LoadTestConfig config;
+    private final String baseUrl;
+    private final int dbPort;
+    private final String database;
+    private final int tables;
+    private final int seedRows;
+    private final String[] operations;
+    private final int[] cumulativeWeights;
+
+    public LoadGenerator(LoadTestConfig config, String baseUrl, int dbPort) {
+        this.config = config;
+        this.baseUrl = baseUrl;
+        this.dbPort = dbPort;
+        this.database = config.get("db.name");
+        this.tables = config.getInt("seed.tables");
+        this.seedRows = config.getInt("seed.rows");
+
+        Map<String, Integer> mix = config.getMix();
+        operations = mix.keySet().toArray(new String[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one mix.* weight must be positive");
+        }
+    }
+
+    /// 某个操作在一个并发级别下的统计
+    public static class OperationStats {
+        final Histogram histogram = new Histogram(MAX_LATENCY_MICROS, 3);
+        long errors;
+        long rejected;
+
+        void add(OperationStats other) {
+            histogram.add(other.histogram);
+            errors += other.errors;
+            rejected += other.rejected;
+        }
+    }
+
+    /// 计时窗口内服务端 JVM 的分配量和 GC 统计(结束时减去开始时)
+    public static class JvmDelta {
+        final long allocatedBytes;
+        final long gcCount;
+        final long gcTimeMs;
+
+        JvmDelta(Map<String, Object> before, Map<String, Object> after) {
+            this.allocatedBytes = delta(before, after, "allocatedBytes");
+            this.gcCount = delta(before, after, "gcCount");
+            this.gcTimeMs = delta(before, after, "gcTimeMs");
+        }
+
+        private static long delta(Map<String, Object> before, Map<String, Object> after, String key) {
+            return ((Number) after.get(key)).longValue() - ((Number) before.get(key)).longValue();
+        }
+    }
+
+    /// 一个并发级别的结果
+    public static class LevelResult {
+        final int concurrency;
+        final long durationMs;
+        final Map<String, OperationStats> operations;
+        // 服务端不支持 /api/jvm/metrics 时为 null
+        final JvmDelta jvm;
+
+        LevelResult(int concurrency, long durationMs, Map<String, OperationStats> operations, JvmDelta jvm) {
+            this.concurrency = concurrency;
+            this.durationMs = durationMs;
+            this.operations = operations;
+            this.jvm = jvm;
+        }
+    }
+
+    public List<LevelResult> run() throws Exception {
+        List<LevelResult> results = new ArrayList<>();
+        int levelIndex = 0;
+        for (int concurrency : config.getIntList("concurrency")) {
+            results.add(runLevel(levelIndex++, concurrency));
+        }
+        return results;
+    }
+
+    private LevelResult runLevel(int levelIndex, int concurrency) throws Exception {
+        long warmupMs = TimeUnit.SECONDS.toMillis(config.getLong("warmup.seconds"));
+        long durationMs = TimeUnit.SECONDS.toMillis(config.getLong("duration.seconds"));
+        log.info("Concurrency {}: warming up for {}ms, measuring for {}ms", concurrency, warmupMs, durationMs);
+
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            long seed = config.getLong("random.seed") + levelIndex * 10_000L + i;
+            workers.add(new Worker(new Random(seed)));
+        }
+        // 每个线程先建立自己的连接, 不计入统计
+        for (Worker worker : workers) {
+            worker.token = worker.client.connect(dbPort, database);
+        }
+
+        CountDownLatch done = new CountDownLatch(concurrency);
+        long start = System.currentTimeMillis();
+        long measureFrom = start + warmupMs;
+        long measureUntil = measureFrom + durationMs;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = workers.get(i);
+            Thread thread = new Thread(() -> {
+                try {
+                    worker.run(measureFrom, measureUntil);
+                } finally {
+                    done.countDown();
+                }
+            }, "loadtest-" + concurrency + "-" + i);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        // 在计时窗口的起止时刻采样服务端 JVM, 预热阶段的分配不计入
+        ApiClient monitor = new ApiClient(baseUrl);
+        sleepUntil(measureFrom);
+        Map<String, Object> jvmBefore = sampleJvm(monitor);
+        sleepUntil(measureUntil);
+        Map<String, Object> jvmAfter = sampleJvm(monitor);
+        done.await();
+
+        Map<String, OperationStats> merged = new LinkedHashMap<>();
+        for (String operation : operations) {
+            merged.put(operation, new OperationStats());
+        }
+        for (Worker worker : workers) {
+            for (Map.Entry<String, OperationStats> stats : worker.stats.entrySet()) {
+                merged.get(stats.getKey()).add(stats.getValue());
+            }
+            try {
+                worker.client.disconnect(worker.token);
+            } catch (Exception e) {
+                log.debug("Failed to disconnect: {}", e.getMessage());
+            }
+        }
+        JvmDelta jvm = jvmBefore != null && jvmAfter != null ? new JvmDelta(jvmBefore, jvmAfter) : null;
+        return new LevelResult(concurrency, durationMs, merged, jvm);
+    }
+
+    private static void sleepUntil(long time) throws InterruptedException {
+        long remaining = time - System.currentTimeMillis();
+        if (remaining > 0) {
+            Thread.sleep(remaining);
+        }
+    }
+
+    private static Map<String, Object> sampleJvm(ApiClient monitor) {
+        try {
+            return monitor.jvmMetrics();
+        } catch (Exception e) {
+            log.warn("Failed to sample service JVM metrics: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private class Worker {
+        final Random random;
+        final ApiClient client = new ApiClient(baseUrl);
+        final Map<String, OperationStats> stats = new LinkedHashMap<>();
+        String token;
+        // connect 操作建立的连接, 在计时结束后断开
+        String pendingDisconnect;
+
+        Worker(Random random) {
+            this.random = random;
+            for (String operation : operations) {
+                stats.put(operation, new OperationStats());
+            }
+        }
+
+        void run(long measureFrom, long measureUntil) {
+            while (true) {
+                long startedAt = System.currentTimeMillis();
+                if (startedAt >= measureUntil) {
+                    return;
+                }
+                String operation = nextOperation();
+                long begin = System.nanoTime();
+                int status;
+                try {
+                    status = execute(operation);
+                } catch (Exception e) {
+                    log.debug("{} failed: {}", operation, e.getMessage());
+                    status = -1;
+                }
+                long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - begin);
+                disconnectPending();
+
+                // 只统计在计时窗口内开始的请求
+                if (startedAt < measureFrom) {
+                    continue;
+                }
+                OperationStats operationStats = stats.get(operation);
+                if (status == 429) {
+                    operationStats.rejected++;
+                } else if (status < 200 || status >= 300) {
+                    operationStats.errors++;
+                } else {
+                    operationStats.histogram.recordValue(Math.min(Math.max(micros, 1), MAX_LATENCY_MICROS));
+                }
+            }
+        }
+
+        private String nextOperation() {
+            int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < cumulativeWeights.length; i++) {
+                if (value < cumulativeWeights[i]) {
+                    return operations[i];
+                }
+            }
+            return operations[operations.length - 1];
+        }
+
+        private void disconnectPending() {
+            if (pendingDisconnect == null) {
+                return;
+            }
+            try {
+                client.disconnect(pendingDisconnect);
+            } catch (Exception e) {
+                log.debug("Failed to disconnect: {}", e.getMessage());
+            }
+            pendingDisconnect = null;
+        }
+
+        private int execute(String operation) throws Exception {
+            String table = EmbeddedDatabase.tableName(random.nextInt(tables));
+            // 起点留出足够的行, 让每次查询返回固定的行数
+            int rows = "export".equals(operation) ? config.getInt("export.rows") : config.getInt("query.rows");
+            long fromId = random.nextInt(Math.max(seedRows - rows, 1));
+            switch (operation) {
+                case "connect": {
+                    // 单独的连接, 测量 /api/connect 本身; 断开在计时结束后进行
+                    pendingDisconnect = client.connect(dbPort, database);
+                    return 200;
+                }
+                case "tables":
+                    return client.tables(token, database).status;
+                case "query":
+                    return client.query(token, "SELECT * FROM " + table + " WHERE id > " + fromId
+                            + " ORDER BY id LIMIT " + rows).status;
+                case "export":
+                    return client.exportCsv(token, "SELECT * FROM " + table + " WHERE id > " + fromId
+                            + " ORDER BY id LIMIT " + rows).status;
+                default:
+                    throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+        }
+    }
+}
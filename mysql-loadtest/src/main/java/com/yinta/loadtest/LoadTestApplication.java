@@ -0,0 +1,47 @@
+package com.yinta.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/// 压测入口
+///
+/// run [配置文件]: 启动嵌入式 MariaDB 和 mysql-service, 按配置施压并写出结果 JSON
+/// compare 基准.json 对比.json [阈值百分比]: 比较两次运行, 存在回退时以非零状态退出
+public class LoadTestApplication {
+    private static final Logger log = LoggerFactory.getLogger(LoadTestApplication.class);
+
+    public static void main(String[] args) throws Exception {
+        String command = args.length > 0 ? args[0] : "run";
+        if ("compare".equals(command)) {
+            if (args.length < 3) {
+                System.err.println("Usage: compare <baseline.json> <candidate.json> [thresholdPercent]");
+                System.exit(2);
+            }
+            double threshold = args.length > 3 ? Double.parseDouble(args[3]) : 10;
+            boolean passed = ResultReport.compare(new File(args[1]), new File(args[2]), threshold);
+            System.exit(passed ? 0 : 1);
+        } else if ("run".equals(command)) {
+            run(args.length > 1 ? args[1] : null);
+        } else {
+            System.err.println("Unknown command: " + command + ", expected run or compare");
+            System.exit(2);
+        }
+    }
+
+    private static void run(String configFile) throws Exception {
+        LoadTestConfig config = LoadTestConfig.load(configFile);
+        long startedAt = System.currentTimeMillis();
+        try (EmbeddedDatabase database = new EmbeddedDatabase(config);
+             ServiceProcess service = new ServiceProcess(config)) {
+            database.start();
+            service.start();
+
+            LoadGenerator generator = new LoadGenerator(config, service.getBaseUrl(), database.getPort());
+            File output = new File(config.get("output"));
+            ResultReport.write(output, config, startedAt, service.getStartupMillis(), generator.run());
+            log.info("Load test finished, results written to {}", output.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.yinta.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/// 压测配置
+/// 依次读取内置的 loadtest.properties, 命令行指定的配置文件和 -D 系统属性, 后者覆盖前者
+public class LoadTestConfig {
+    private final Properties properties = new Properties();
+
+    public static LoadTestConfig load(String file) throws IOException {
+        LoadTestConfig config = new LoadTestConfig();
+        try (InputStream in = LoadTestConfig.class.getResourceAsStream("/loadtest.properties")) {
+            config.properties.load(in);
+        }
+        if (file != null) {
+            try (Reader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+                config.properties.load(reader);
+            }
+        }
+        for (String key : config.properties.stringPropertyNames()) {
+            String override = System.getProperty(key);
+            if (override != null) {
+                config.properties.setProperty(key, override);
+            }
+        }
+        return config;
+    }
+
+    public String get(String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing load test setting: " + key);
+        }
+        return value.trim();
+    }
+
+    public int getInt(String key) {
+        return Integer.parseInt(get(key));
+    }
+
+    public long getLong(String key) {
+        return Long.parseLong(get(key));
+    }
+
+    public List<Integer> getIntList(String key) {
+        List<Integer> values = new ArrayList<>();
+        for (String value : get(key).split(",")) {
+            if (!value.trim().isEmpty()) {
+                values.add(Integer.parseInt(value.trim()));
+            }
+        }
+        return values;
+    }
+
+    /// 请求组合, 保持声明顺序
+    public Map<String, Integer> getMix() {
+        Map<String, Integer> mix = new LinkedHashMap<>();
+        for (String operation : new String[]{"connect", "tables", "query", "export"}) {
+            int weight = getInt("mix." + operation);
+            if (weight > 0) {
+                mix.put(operation, weight);
+            }
+        }
+        return mix;
+    }
+
+    public Map<String, String> asMap() {
+        Map<String, String> map = new LinkedHashMap<>();
+        for (String key : new java.util.TreeSet<>(properties.stringPropertyNames())) {
+            map.put(key, properties.getProperty(key));
+        }
+        return map;
+    }
+}
@@ -0,0 +1,172 @@
+package com.yinta.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/// 压测结果
+/// 以 JSON 写出配置, 运行环境和每个并发级别下各操作的吞吐量与延迟分位数(毫秒)以及服务端的分配速率,
+/// 并可比较两次运行的结果
+public class ResultReport {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String[] COMPARED_METRICS = {"throughput", "p50Ms", "p99Ms", "p999Ms"};
+    // 分配指标只打印变化, 不参与回退判断
+    private static final String[] COMPARED_JVM_METRICS = {"allocationRateMBps", "allocatedBytesPerRequest", "gcTimeMs"};
+
+    public static void write(File file, LoadTestConfig config, long startedAt, long serviceStartupMs,
+                             List<LoadGenerator.LevelResult> levels) throws IOException {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt);
+        // 从启动服务进程到第一个请求成功返回
+        report.put("serviceStartupMs", serviceStartupMs);
+        report.put("config", config.asMap());
+
+        Map<String, Object> environment = new LinkedHashMap<>();
+        environment.put("java", System.getProperty("java.version"));
+        environment.put("os", System.getProperty("os.name") + " " + System.getProperty("os.arch"));
+        environment.put("cpus", Runtime.getRuntime().availableProcessors());
+        report.put("environment", environment);
+
+        Object[] results = new Object[levels.size()];
+        for (int i = 0; i < results.length; i++) {
+            LoadGenerator.LevelResult level = levels.get(i);
+            Map<String, Object> operations = new LinkedHashMap<>();
+            LoadGenerator.OperationStats total = new LoadGenerator.OperationStats();
+            for (Map.Entry<String, LoadGenerator.OperationStats> stats : level.operations.entrySet()) {
+                operations.put(stats.getKey(), summarize(stats.getValue(), level.durationMs));
+                total.add(stats.getValue());
+            }
+
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("concurrency", level.concurrency);
+            result.put("durationMs", level.durationMs);
+            result.put("operations", operations);
+            result.put("total", summarize(total, level.durationMs));
+            if (level.jvm != null) {
+                result.put("jvm", summarizeJvm(level.jvm, total.histogram.getTotalCount(), level.durationMs));
+            }
+            results[i] = result;
+        }
+        report.put("levels", results);
+
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        OBJECT_MAPPER.writeValue(file, report);
+    }
+
+    private static Map<String, Object> summarize(LoadGenerator.OperationStats stats, long durationMs) {
+        Histogram histogram = stats.histogram;
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getTotalCount());
+        summary.put("errors", stats.errors);
+        summary.put("rejected", stats.rejected);
+        summary.put("throughput", round(histogram.getTotalCount() * 1000.0 / durationMs));
+        summary.put("meanMs", round(histogram.getMean() / 1000.0));
+        summary.put("p50Ms", millis(histogram.getValueAtPercentile(50)));
+        summary.put("p99Ms", millis(histogram.getValueAtPercentile(99)));
+        summary.put("p999Ms", millis(histogram.getValueAtPercentile(99.9)));
+        summary.put("maxMs", millis(histogram.getMaxValue()));
+        return summary;
+    }
+
+    private static Map<String, Object> summarizeJvm(LoadGenerator.JvmDelta jvm, long requests, long durationMs) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("allocatedBytes", jvm.allocatedBytes);
+        summary.put("allocationRateMBps", round(jvm.allocatedBytes / 1048576.0 * 1000 / durationMs));
+        summary.put("allocatedBytesPerRequest", requests > 0 ? jvm.allocatedBytes / requests : 0);
+        summary.put("gcCount", jvm.gcCount);
+        summary.put("gcTimeMs", jvm.gcTimeMs);
+        return summary;
+    }
+
+    /// 比较两次运行的结果, 打印各项指标的变化
+    ///
+    /// @return 吞吐量下降或 p99 上升超过阈值(百分比)时返回 false
+    public static boolean compare(File baselineFile, File candidateFile, double thresholdPercent) throws IOException {
+        JsonNode baseline = OBJECT_MAPPER.readTree(baselineFile);
+        JsonNode candidate = OBJECT_MAPPER.readTree(candidateFile);
+        boolean passed = true;
+
+        if (baseline.has("serviceStartupMs") && candidate.has("serviceStartupMs")) {
+            System.out.printf("service startup: %dms -> %dms%n%n",
+                    baseline.get("serviceStartupMs").asLong(), candidate.get("serviceStartupMs").asLong());
+        }
+        System.out.printf("%-12s %-8s %-11s %12s %12s %9s%n",
+                "concurrency", "op", "metric", "baseline", "candidate", "change");
+        for (JsonNode candidateLevel : candidate.get("levels")) {
+            int concurrency = candidateLevel.get("concurrency").asInt();
+            JsonNode baselineLevel = findLevel(baseline, concurrency);
+            if (baselineLevel == null) {
+                System.out.printf("%-12d missing in baseline%n", concurrency);
+                continue;
+            }
+
+            Map<String, JsonNode> candidateOperations = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = candidateLevel.get("operations").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                candidateOperations.put(field.getKey(), field.getValue());
+            }
+            candidateOperations.put("total", candidateLevel.get("total"));
+
+            for (Map.Entry<String, JsonNode> operation : candidateOperations.entrySet()) {
+                JsonNode before = "total".equals(operation.getKey())
+                        ? baselineLevel.get("total")
+                        : baselineLevel.get("operations").get(operation.getKey());
+                if (before == null || before.get("count").asLong() == 0) {
+                    continue;
+                }
+                for (String metric : COMPARED_METRICS) {
+                    double oldValue = before.get(metric).asDouble();
+                    double newValue = operation.getValue().get(metric).asDouble();
+                    double change = oldValue == 0 ? 0 : (newValue - oldValue) * 100 / oldValue;
+                    boolean regressed = "throughput".equals(metric) ? -change > thresholdPercent
+                            : "p99Ms".equals(metric) && change > thresholdPercent;
+                    System.out.printf("%-12d %-8s %-11s %12.3f %12.3f %+8.1f%%%s%n", concurrency,
+                            operation.getKey(), metric, oldValue, newValue, change, regressed ? "  REGRESSION" : "");
+                    passed &= !regressed;
+                }
+            }
+
+            JsonNode beforeJvm = baselineLevel.get("jvm");
+            JsonNode afterJvm = candidateLevel.get("jvm");
+            if (beforeJvm != null && afterJvm != null) {
+                for (String metric : COMPARED_JVM_METRICS) {
+                    double oldValue = beforeJvm.get(metric).asDouble();
+                    double newValue = afterJvm.get(metric).asDouble();
+                    double change = oldValue == 0 ? 0 : (newValue - oldValue) * 100 / oldValue;
+                    System.out.printf("%-12d %-8s %-11s %12.3f %12.3f %+8.1f%%%n", concurrency,
+                            "jvm", metric, oldValue, newValue, change);
+                }
+            }
+        }
+        return passed;
+    }
+
+    private static JsonNode findLevel(JsonNode report, int concurrency) {
+        for (JsonNode level : report.get("levels")) {
+            if (level.get("concurrency").asInt() == concurrency) {
+                return level;
+            }
+        }
+        return null;
+    }
+
+    private static double millis(long micros) {
+        return round(micros / 1000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
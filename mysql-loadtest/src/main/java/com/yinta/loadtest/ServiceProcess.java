@@ -0,0 +1,105 @@
+package com.yinta.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/// 以子进程方式启动被测的 mysql-service, 服务日志写入 target/service.log
+public class ServiceProcess implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ServiceProcess.class);
+    private static final long STARTUP_TIMEOUT_MS = 120_000;
+
+    private final LoadTestConfig config;
+    private Process process;
+    private long startupMillis;
+
+    public ServiceProcess(LoadTestConfig config) {
+        this.config = config;
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + config.getInt("service.port");
+    }
+
+    /// 从启动进程到第一个请求成功返回的时间
+    public long getStartupMillis() {
+        return startupMillis;
+    }
+
+    public void start() throws Exception {
+        File directory = new File(config.get("service.dir"));
+        File jar = new File(config.get("service.jar"));
+        if (!jar.isAbsolute()) {
+            jar = new File(directory, jar.getPath());
+        }
+        if (!jar.isFile()) {
+            throw new IllegalStateException("Service jar not found: " + jar.getAbsolutePath()
+                    + ", build it first with mvn -f ../mysql-service/pom.xml package");
+        }
+
+        List<String> command = new ArrayList<>();
+        command.add(new File(System.getProperty("java.home"), "bin/java").getPath());
+        for (String arg : config.get("service.jvm-args").split("\\s+")) {
+            if (!arg.isEmpty()) {
+                command.add(arg);
+            }
+        }
+        command.addAll(Arrays.asList("-jar", config.get("service.jar"),
+                "--server.port=" + config.getInt("service.port"),
+                // 调试日志会显著影响吞吐
+                "--logging.level.com.yinta=WARN"));
+        for (String arg : config.get("service.args").split("\\s+")) {
+            if (!arg.isEmpty()) {
+                command.add(arg);
+            }
+        }
+
+        File logFile = new File("target/service.log");
+        logFile.getParentFile().mkdirs();
+        log.info("Starting service: {}", String.join(" ", command));
+        long startedAt = System.currentTimeMillis();
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .directory(directory)
+                .redirectErrorStream(true)
+                .redirectOutput(logFile);
+        builder.environment().putIfAbsent("SESSION_SECRET", config.get("service.session-secret"));
+        process = builder.start();
+
+        while (!isReady()) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Service exited during startup, see " + logFile.getPath());
+            }
+            if (System.currentTimeMillis() - startedAt > STARTUP_TIMEOUT_MS) {
+                throw new IllegalStateException("Service did not start within " + STARTUP_TIMEOUT_MS + "ms");
+            }
+            Thread.sleep(200);
+        }
+        startupMillis = System.currentTimeMillis() - startedAt;
+        log.info("Service ready after {}ms", startupMillis);
+    }
+
+    private boolean isReady() {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(getBaseUrl() + "/api/downloads").openConnection();
+            connection.setConnectTimeout(500);
+            connection.setReadTimeout(1000);
+            return connection.getResponseCode() == 200;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (process != null) {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+}
@@ -2,10 +2,18 @@ package com.yinta.mysqlservice;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MysqlServiceApplication {
+    // 记录启动过程中各阶段和各 Bean 的耗时, 通过 /api/startup-timing 查看
+    private static final int STARTUP_STEP_CAPACITY = 4096;
+
     public static void main(String[] args) {
-        SpringApplication.run(MysqlServiceApplication.class, args);
+        SpringApplication application = new SpringApplication(MysqlServiceApplication.class);
+        application.setApplicationStartup(new BufferingApplicationStartup(STARTUP_STEP_CAPACITY));
+        application.run(args);
     }
-} 
\ No newline at end of file
+} 
@@ -0,0 +1,136 @@
+package com.yinta.mysqlservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yinta.mysqlservice.service.AdmissionService;
+import com.yinta.mysqlservice.service.DatabaseService;
+import com.yinta.mysqlservice.service.JwtService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.annotation.Resource;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/// 在控制器之前为数据库相关请求申请 AdmissionService 名额, 请求结束(包括异步流式响应结束)后释放
+@Slf4j
+@Component
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+    private static final String PERMIT_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".permit";
+
+    private static final Set<String> METADATA_PATHS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "/api/databases", "/api/tables", "/api/table-structure", "/api/table-indexes",
+            "/api/create-table-statement", "/api/search-tables", "/api/select-database")));
+
+    private static final Set<String> HEAVY_PATHS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "/api/query", "/api/alter-table", "/api/create-table-statements",
+            "/api/export/excel", "/api/export/csv")));
+
+    @Resource
+    private AdmissionService admissionService;
+
+    @Resource
+    private JwtService jwtService;
+
+    @Resource
+    private DatabaseService databaseService;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        // 异步请求完成后的再次分派沿用首次分派时申请的名额
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        AdmissionService.Lane lane = laneOf(request);
+        String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (lane == null || authHeader == null || authHeader.length() <= 7) {
+            return true;
+        }
+
+        String sessionId;
+        String target;
+        try {
+            sessionId = jwtService.getConnectionIdFromToken(authHeader.substring(7));
+            // 同一服务器上不同用户的会话共用一个限额
+            target = databaseService.getHostKey(sessionId);
+        } catch (Exception e) {
+            // 令牌或会话无效时交给控制器返回错误
+            return true;
+        }
+
+        try {
+            AdmissionService.Permit permit = admissionService.acquire(lane, sessionId, target);
+            request.setAttribute(PERMIT_ATTRIBUTE, permit);
+            return true;
+        } catch (AdmissionService.AdmissionRejectedException e) {
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("message", e.getMessage());
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(), errorResponse);
+            return false;
+        }
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        AdmissionService.Permit permit = (AdmissionService.Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            request.getAsyncContext().addListener(new AsyncListener() {
+                @Override
+                public void onComplete(AsyncEvent event) {
+                    permit.close();
+                }
+
+                @Override
+                public void onTimeout(AsyncEvent event) {
+                    permit.close();
+                }
+
+                @Override
+                public void onError(AsyncEvent event) {
+                    permit.close();
+                }
+
+                @Override
+                public void onStartAsync(AsyncEvent event) {
+                }
+            });
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        AdmissionService.Permit permit = (AdmissionService.Permit) request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit != null && !request.isAsyncStarted()) {
+            permit.close();
+        }
+    }
+
+    private AdmissionService.Lane laneOf(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (HEAVY_PATHS.contains(path)) {
+            return AdmissionService.Lane.HEAVY;
+        }
+        if (METADATA_PATHS.contains(path)) {
+            return AdmissionService.Lane.METADATA;
+        }
+        return null;
+    }
+}
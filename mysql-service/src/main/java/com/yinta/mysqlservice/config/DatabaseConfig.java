@@ -3,6 +3,8 @@ package com.yinta.mysqlservice.config;
 import lombok.Data;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Data
 public class DatabaseConfig {
     private String host;
@@ -10,4 +12,15 @@ public class DatabaseConfig {
     private String username;
     private String password;
     private String database;
-} 
\ No newline at end of file
+    // 只读副本, 查询, 元数据和导出优先发往副本
+    private List<Replica> replicas;
+
+    @Data
+    public static class Replica {
+        private String host;
+        private int port;
+        // 未设置时使用主库的用户名和密码
+        private String username;
+        private String password;
+    }
+}
\ No newline at end of file
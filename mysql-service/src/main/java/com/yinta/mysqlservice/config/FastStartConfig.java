@@ -0,0 +1,42 @@
+package com.yinta.mysqlservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import java.util.Collections;
+import java.util.List;
+
+/// 快速启动配置(faststart 环境)
+/// 把导出和元数据子系统的 Bean 标记为延迟初始化, 在首次使用时才创建,
+/// 例如 ExportService 依赖的 POI 类和导出目录清理都推迟到第一次导出请求
+@Slf4j
+@Configuration
+@Profile("faststart")
+public class FastStartConfig {
+
+    // 必须是静态方法, 以便在其他 Bean 定义被实例化之前执行
+    @Bean
+    public static BeanFactoryPostProcessor lazySubsystemPostProcessor(Environment environment) {
+        List<String> lazyBeans = Binder.get(environment)
+                .bind("app.startup.lazy-beans", Bindable.listOf(String.class))
+                .orElse(Collections.emptyList());
+        return beanFactory -> {
+            for (String beanName : lazyBeans) {
+                if (!beanFactory.containsBeanDefinition(beanName)) {
+                    log.warn("Lazy bean {} is not defined, skipping", beanName);
+                    continue;
+                }
+                BeanDefinition definition = beanFactory.getBeanDefinition(beanName);
+                definition.setLazyInit(true);
+            }
+            log.info("Deferred initialization of {} beans: {}", lazyBeans.size(), lazyBeans);
+        };
+    }
+}
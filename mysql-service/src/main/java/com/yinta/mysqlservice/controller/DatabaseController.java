@@ -1,16 +1,32 @@
 package com.yinta.mysqlservice.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yinta.mysqlservice.config.DatabaseConfig;
 import com.yinta.mysqlservice.service.DatabaseService;
 import com.yinta.mysqlservice.service.JwtService;
+import com.yinta.mysqlservice.service.OperationProgress;
+import com.yinta.mysqlservice.service.ProgressOutputStream;
+import com.yinta.mysqlservice.service.ProgressService;
+import com.yinta.mysqlservice.service.QueryCursor;
+import com.yinta.mysqlservice.service.QueryJsonWriter;
+import com.yinta.mysqlservice.service.QueryResult;
+import com.yinta.mysqlservice.service.TableSearchService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -28,12 +44,30 @@ public class DatabaseController {
     @Resource
     private JwtService jwtService;
 
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private ProgressService progressService;
+
+    // 注入代理, faststart 环境下表名索引服务在首次搜索时才创建
+    @Lazy
+    @Resource
+    private TableSearchService tableSearchService;
+
+    @Resource
+    private QueryJsonWriter queryJsonWriter;
+
+    // 为 true 时 SELECT 结果从 ResultSet 直接写成 JSON, 不在服务端缓存
+    @Value("${app.query.direct-json}")
+    private boolean directJson;
+
     @PostMapping("/connect")
     public ResponseEntity<?> connect(@RequestBody DatabaseConfig config) {
         try {
             log.info("Attempting to connect to database: {}:{}", config.getHost(), config.getPort());
             String connectionId = databaseService.connect(config);
-            String token = jwtService.generateToken(connectionId);
+            String token = jwtService.generateToken(connectionId, config);
             
             Map<String, String> response = new HashMap<>();
             response.put("token", token);
@@ -57,6 +91,8 @@ public class DatabaseController {
         try {
             String token = authHeader.substring(7); // Remove "Bearer "
             String connectionId = jwtService.getConnectionIdFromToken(token);
+            // 先撤销令牌, 避免断开过程中的并发请求用令牌中的描述重新登记会话
+            jwtService.revoke(connectionId);
             databaseService.disconnect(connectionId);
             return ResponseEntity.ok().build();
         } catch (Exception e) {
@@ -104,33 +140,122 @@ public class DatabaseController {
         }
     }
 
+    /// 表名搜索端点
+    /// 在当前连接的服务器上按库名和表名搜索, 返回按相关度排序的结果以及近似行数和数据大小
+    ///
+    /// @param authHeader 认证头部
+    /// @param q 搜索词, 支持 库名.表名 形式
+    /// @param limit 最多返回的条数, 默认 50
+    /// @return ResponseEntity<?> 包含 total 和 results 的响应
+    @GetMapping("/search-tables")
+    public ResponseEntity<?> searchTables(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam String q,
+            @RequestParam(required = false, defaultValue = "50") Integer limit) {
+        try {
+            if (q.trim().isEmpty()) {
+                throw new IllegalArgumentException("Search query cannot be empty");
+            }
+            String token = authHeader.substring(7);
+            String connectionId = jwtService.getConnectionIdFromToken(token);
+            Map<String, Object> result = tableSearchService.search(connectionId, q, limit);
+            log.debug("Found {} tables matching '{}' in {}us", result.get("total"), q, result.get("tookMicros"));
+            return ResponseEntity.ok(result);
+        } catch (Exception e) {
+            log.error("Error searching tables", e);
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(errorResponse);
+        }
+    }
+
+    /// 执行查询
+    /// 响应体由本方法直接写出: SELECT 结果边读取边序列化(app.query.direct-json), 其余语句使用 QueryResult。
+    /// 读取中途失败时, 如果响应尚未提交则返回 500; 已经提交时状态码仍为 200,
+    /// JSON 以 truncated=true 结束并带有 error 字段, 客户端应将其视为查询失败。
     @PostMapping("/query")
-    public ResponseEntity<?> executeQuery(
+    public void executeQuery(
             @RequestHeader("Authorization") String authHeader,
-            @RequestBody Map<String, String> request) {
+            @RequestBody Map<String, String> request,
+            HttpServletResponse response) throws IOException {
+        // 可选的 operationId, 客户端可用同一令牌通过 /api/progress/{operationId} 订阅执行进度
+        OperationProgress progress = progressService.start(request.get("operationId"));
         try {
             String token = authHeader.substring(7);
             String connectionId = jwtService.getConnectionIdFromToken(token);
+            progressService.register(connectionId, progress);
             String query = request.get("query");
             
             if (query == null || query.trim().isEmpty()) {
                 throw new IllegalArgumentException("Query cannot be empty");
             }
 
+            if (directJson) {
+                QueryCursor cursor = databaseService.openQuery(connectionId, query, progress);
+                if (cursor != null) {
+                    writeQueryResult(cursor, response, progress);
+                    return;
+                }
+            }
+
             log.info("Executing query: {}", query);
-            List<Map<String, Object>> results = databaseService.executeQuery(connectionId, query);
-            log.info("Query executed successfully, returned {} rows", results.size());
-            
-            Map<String, Object> response = new HashMap<>();
-            response.put("results", results);
-            return ResponseEntity.ok(response);
+            try (QueryResult results = databaseService.executeQuery(connectionId, query, progress)) {
+                log.info("Query executed successfully, returned {} rows", results.size());
+                progress.setPhase(OperationProgress.PHASE_SERIALIZE);
+
+                Map<String, Object> body = new HashMap<>();
+                body.put("results", results);
+                body.put("truncated", results.isTruncated());
+                if (results.isTruncated()) {
+                    body.put("truncatedReason", results.getTruncatedReason());
+                }
+                writeJson(response, HttpStatus.OK, body, new ProgressOutputStream(response.getOutputStream(), progress));
+                progress.addRowsWritten(results.size());
+            }
+            progressService.finish(progress, null);
         } catch (Exception e) {
             log.error("Error executing query", e);
-            Map<String, String> errorResponse = new HashMap<>();
-            errorResponse.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(errorResponse);
+            progressService.finish(progress, e.getMessage());
+            if (!response.isCommitted()) {
+                response.resetBuffer();
+                writeError(response, e.getMessage());
+            }
+        }
+    }
+
+    // 边读取边写入响应
+    private void writeQueryResult(QueryCursor cursor, HttpServletResponse response,
+                                  OperationProgress progress) throws IOException {
+        String error;
+        try {
+            response.setStatus(HttpStatus.OK.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            error = queryJsonWriter.write(cursor, response.getOutputStream(), progress);
+        } finally {
+            cursor.close();
         }
+        if (error != null && !response.isCommitted()) {
+            // 结果还在缓冲区中, 丢弃已写的部分改为返回错误
+            response.resetBuffer();
+            writeError(response, error);
+        }
+        progressService.finish(progress, error);
+    }
+
+    private void writeError(HttpServletResponse response, String message) throws IOException {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("message", message);
+        writeJson(response, HttpStatus.INTERNAL_SERVER_ERROR, errorResponse, response.getOutputStream());
+    }
+
+    private void writeJson(HttpServletResponse response, HttpStatus status, Object body,
+                           OutputStream outputStream) throws IOException {
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .writeValue(outputStream, body);
     }
 
     @PostMapping("/select-database")
@@ -143,9 +268,11 @@ public class DatabaseController {
             if (database == null || database.isEmpty()) {
                 throw new IllegalArgumentException("Database name is required");
             }
-            databaseService.selectDatabase(connectionId, database);
+            DatabaseConfig config = databaseService.selectDatabase(connectionId, database);
             Map<String, String> response = new HashMap<>();
             response.put("message", "Database selected successfully");
+            // 新令牌携带切换后的数据库, 请求落到其他节点时也能使用
+            response.put("token", jwtService.generateToken(connectionId, config));
             return ResponseEntity.ok(response);
         } catch (Exception e) {
             log.error("Error selecting database", e);
@@ -223,6 +350,58 @@ public class DatabaseController {
         }
     }
 
+    /// 批量获取建表语句端点
+    /// 并发获取多张表(或整个库)的建表语句, 以 NDJSON 形式逐行返回, 每完成一张表输出一行
+    ///
+    /// @param authHeader 认证头部
+    /// @param database 数据库名称
+    /// @param tables 表名列表, 不传时返回该库下所有表
+    /// @return ResponseEntity<StreamingResponseBody> 每行形如 {"table": ..., "statement": ...} 或 {"table": ..., "error": ...}
+    @GetMapping(value = "/create-table-statements",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> getCreateTableStatements(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestParam String database,
+            @RequestParam(required = false) List<String> tables) {
+        String connectionId;
+        try {
+            String token = authHeader.substring(7);
+            connectionId = jwtService.getConnectionIdFromToken(token);
+        } catch (Exception e) {
+            log.error("Error getting create table statements", e);
+            Map<String, String> errorResponse = new HashMap<>();
+            errorResponse.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(out -> objectMapper.writeValue(out, errorResponse));
+        }
+
+        StreamingResponseBody body = out -> {
+            try {
+                databaseService.streamCreateTableStatements(connectionId, database, tables, entry -> {
+                    try {
+                        out.write(objectMapper.writeValueAsBytes(entry));
+                        out.write('\n');
+                        out.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                log.warn("Client aborted create table statements stream: {}", e.getMessage());
+            } catch (Exception e) {
+                log.error("Error getting create table statements for database: " + database, e);
+                Map<String, String> errorResponse = new HashMap<>();
+                errorResponse.put("message", e.getMessage());
+                out.write(objectMapper.writeValueAsBytes(errorResponse));
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PostMapping("/alter-table")
     public ResponseEntity<?> alterTable(
             @RequestHeader("Authorization") String authHeader,
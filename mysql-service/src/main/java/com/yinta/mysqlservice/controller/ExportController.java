@@ -1,17 +1,33 @@
 package com.yinta.mysqlservice.controller;
 
+import com.yinta.mysqlservice.service.ExportJob;
+import com.yinta.mysqlservice.service.ExportJobService;
 import com.yinta.mysqlservice.service.ExportService;
 import com.yinta.mysqlservice.service.JwtService;
+import com.yinta.mysqlservice.service.OperationProgress;
+import com.yinta.mysqlservice.service.ProgressService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
 @RestController
@@ -21,14 +37,18 @@ import java.util.Map;
 public class ExportController {
     private final ExportService exportService;
     private final JwtService jwtService;
+    private final ExportJobService exportJobService;
+    private final ProgressService progressService;
 
     @PostMapping("/excel")
     public ResponseEntity<byte[]> exportToExcel(
             @RequestHeader("Authorization") String authHeader,
             @RequestBody Map<String, String> request) {
+        OperationProgress progress = progressService.start(request.get("operationId"));
         try {
             String token = authHeader.substring(7);
             String connectionId = jwtService.getConnectionIdFromToken(token);
+            progressService.register(connectionId, progress);
             String query = request.get("query");
             String filename = request.get("filename");
 
@@ -36,15 +56,13 @@ public class ExportController {
                 throw new IllegalArgumentException("Query cannot be empty");
             }
 
-            if (filename == null || filename.trim().isEmpty()) {
-                filename = "export.xlsx";
-            } else if (!filename.endsWith(".xlsx")) {
-                filename += ".xlsx";
-            }
+            filename = normalizeFilename(filename, ".xlsx");
 
-            byte[] excelFile = exportService.exportToExcel(connectionId, query);
-            String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8.toString())
-                    .replace("+", "%20");
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            exportService.exportToExcel(connectionId, query, outputStream, progress);
+            byte[] excelFile = outputStream.toByteArray();
+            progressService.finish(progress, null);
+            String encodedFilename = encodeFilename(filename);
 
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"))
@@ -52,6 +70,7 @@ public class ExportController {
                     .body(excelFile);
         } catch (Exception e) {
             log.error("Error exporting to Excel", e);
+            progressService.finish(progress, e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
@@ -60,9 +79,11 @@ public class ExportController {
     public ResponseEntity<String> exportToCsv(
             @RequestHeader("Authorization") String authHeader,
             @RequestBody Map<String, String> request) {
+        OperationProgress progress = progressService.start(request.get("operationId"));
         try {
             String token = authHeader.substring(7);
             String connectionId = jwtService.getConnectionIdFromToken(token);
+            progressService.register(connectionId, progress);
             String query = request.get("query");
             String filename = request.get("filename");
 
@@ -70,15 +91,13 @@ public class ExportController {
                 throw new IllegalArgumentException("Query cannot be empty");
             }
 
-            if (filename == null || filename.trim().isEmpty()) {
-                filename = "export.csv";
-            } else if (!filename.endsWith(".csv")) {
-                filename += ".csv";
-            }
+            filename = normalizeFilename(filename, ".csv");
 
-            String csvContent = exportService.exportToCsv(connectionId, query);
-            String encodedFilename = URLEncoder.encode(filename, StandardCharsets.UTF_8.toString())
-                    .replace("+", "%20");
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            exportService.exportToCsv(connectionId, query, outputStream, progress);
+            String csvContent = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+            progressService.finish(progress, null);
+            String encodedFilename = encodeFilename(filename);
 
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType("text/csv"))
@@ -86,7 +105,204 @@ public class ExportController {
                     .body(csvContent);
         } catch (Exception e) {
             log.error("Error exporting to CSV", e);
+            progressService.finish(progress, e.getMessage());
             return ResponseEntity.internalServerError().build();
         }
     }
-} 
\ No newline at end of file
+
+    /// 提交后台导出任务端点
+    /// 导出在后台线程池中生成到磁盘, 客户端轮询任务状态后通过下载端点获取文件(支持断点续传)
+    ///
+    /// @param authHeader 认证头部
+    /// @param request 包含 query, format(excel/csv), filename 以及可选的 refresh
+    /// @return ResponseEntity<?> 任务信息
+    @PostMapping("/jobs")
+    public ResponseEntity<?> submitJob(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestBody Map<String, String> request) {
+        try {
+            String token = authHeader.substring(7);
+            String connectionId = jwtService.getConnectionIdFromToken(token);
+            String query = request.get("query");
+            String format = request.get("format") != null ? request.get("format") : ExportJobService.FORMAT_EXCEL;
+            boolean refresh = Boolean.parseBoolean(request.get("refresh"));
+
+            if (query == null || query.trim().isEmpty()) {
+                throw new IllegalArgumentException("Query cannot be empty");
+            }
+            if (!ExportJobService.FORMAT_EXCEL.equals(format) && !ExportJobService.FORMAT_CSV.equals(format)) {
+                throw new IllegalArgumentException("Unsupported export format: " + format);
+            }
+
+            String extension = ExportJobService.FORMAT_EXCEL.equals(format) ? ".xlsx" : ".csv";
+            String filename = normalizeFilename(request.get("filename"), extension);
+            ExportJob job = exportJobService.submit(connectionId, query, format, filename, refresh);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(toResponse(job));
+        } catch (RejectedExecutionException e) {
+            log.warn("Export job queue is full");
+            return errorResponse(HttpStatus.TOO_MANY_REQUESTS, "Too many export jobs, please try again later");
+        } catch (Exception e) {
+            log.error("Error submitting export job", e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getJob(
+            @RequestHeader("Authorization") String authHeader,
+            @PathVariable String jobId) {
+        try {
+            String token = authHeader.substring(7);
+            String connectionId = jwtService.getConnectionIdFromToken(token);
+            return ResponseEntity.ok(toResponse(exportJobService.getJob(connectionId, jobId)));
+        } catch (IllegalArgumentException e) {
+            return errorResponse(HttpStatus.NOT_FOUND, e.getMessage());
+        } catch (Exception e) {
+            log.error("Error getting export job", e);
+            return errorResponse(HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage());
+        }
+    }
+
+    /// 下载导出文件端点
+    /// 支持单个 HTTP Range 请求(bytes=start-end), 文件内容通过 FileChannel.transferTo 写出
+    @GetMapping("/jobs/{jobId}/download")
+    public void downloadJob(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            @PathVariable String jobId,
+            HttpServletResponse response) throws IOException {
+        ExportJob job;
+        try {
+            String token = authHeader.substring(7);
+            String connectionId = jwtService.getConnectionIdFromToken(token);
+            job = exportJobService.getJob(connectionId, jobId);
+        } catch (Exception e) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), e.getMessage());
+            return;
+        }
+
+        Path file = job.getFile();
+        if (job.getStatus() != ExportJob.Status.COMPLETED || file == null) {
+            response.sendError(HttpStatus.CONFLICT.value(), "Export job is " + job.getStatus());
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            String etag = "\"" + job.getJobId() + "-" + size + "\"";
+            long start = 0;
+            long end = size - 1;
+
+            if (rangeApplies(range, ifRange, etag)) {
+                long[] bounds = parseRange(range, size);
+                if (bounds == null) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                    return;
+                }
+                start = bounds[0];
+                end = bounds[1];
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+            } else {
+                response.setStatus(HttpStatus.OK.value());
+            }
+
+            String contentType = ExportJobService.FORMAT_EXCEL.equals(job.getFormat())
+                    ? "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet" : "text/csv";
+            response.setContentType(contentType);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+            response.setHeader(HttpHeaders.ETAG, etag);
+            response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename*=UTF-8''" + encodeFilename(job.getFilename()));
+            long length = end - start + 1;
+            response.setContentLengthLong(length);
+
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (length > 0) {
+                long transferred = channel.transferTo(position, length, target);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+                length -= transferred;
+            }
+        }
+    }
+
+    // If-Range 与当前 ETag 不一致 (文件已变化, 或传的是日期) 时忽略 Range, 返回完整文件
+    static boolean rangeApplies(String range, String ifRange, String etag) {
+        return range != null && (ifRange == null || ifRange.equals(etag));
+    }
+
+    // 解析单个字节范围, 返回 [start, end], 无法满足时返回 null; 多个范围时只取第一个
+    static long[] parseRange(String range, long size) {
+        if (!range.startsWith("bytes=") || size == 0) {
+            return null;
+        }
+        String spec = range.substring(6).split(",")[0].trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? size - 1 : Math.min(Long.parseLong(spec.substring(dash + 1)), size - 1);
+            }
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private Map<String, Object> toResponse(ExportJob job) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("jobId", job.getJobId());
+        response.put("status", job.getStatus());
+        response.put("format", job.getFormat());
+        response.put("filename", job.getFilename());
+        response.put("size", job.getSize());
+        response.put("createdAt", job.getCreatedAt());
+        if (job.getError() != null) {
+            response.put("message", job.getError());
+        }
+        return response;
+    }
+
+    private ResponseEntity<Map<String, String>> errorResponse(HttpStatus status, String message) {
+        Map<String, String> errorResponse = new HashMap<>();
+        errorResponse.put("message", message);
+        return ResponseEntity.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(errorResponse);
+    }
+
+    private String normalizeFilename(String filename, String extension) {
+        if (filename == null || filename.trim().isEmpty()) {
+            return "export" + extension;
+        } else if (!filename.endsWith(extension)) {
+            return filename + extension;
+        }
+        return filename;
+    }
+
+    private String encodeFilename(String filename) throws UnsupportedEncodingException {
+        return URLEncoder.encode(filename, StandardCharsets.UTF_8.toString())
+                .replace("+", "%20");
+    }
+}
@@ -0,0 +1,60 @@
+package com.yinta.mysqlservice.controller;
+
+import com.yinta.mysqlservice.service.AdmissionService;
+import com.yinta.mysqlservice.service.JvmMetricsService;
+import com.yinta.mysqlservice.service.ReplicaRouter;
+import com.yinta.mysqlservice.service.StartupTimingService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.annotation.Resource;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api")
+public class MetricsController {
+
+    @Resource
+    private AdmissionService admissionService;
+
+    @Resource
+    private StartupTimingService startupTimingService;
+
+    @Resource
+    private ReplicaRouter replicaRouter;
+
+    @Resource
+    private JvmMetricsService jvmMetricsService;
+
+    /// 准入控制指标端点
+    /// 返回各通道当前的并发数, 排队数, 以及累计放行, 拒绝和超时次数
+    @GetMapping("/admission/metrics")
+    public ResponseEntity<Map<String, Object>> getAdmissionMetrics() {
+        return ResponseEntity.ok(admissionService.getMetrics());
+    }
+
+    /// 只读副本指标端点
+    /// 返回当前节点上各副本的状态, 复制延迟, 在途请求数, 路由次数以及回退到主库的次数
+    @GetMapping("/replica/metrics")
+    public ResponseEntity<Map<String, Object>> getReplicaMetrics() {
+        return ResponseEntity.ok(replicaRouter.getMetrics());
+    }
+
+    /// JVM 指标端点
+    /// 返回自启动以来的近似分配总量, GC 次数和耗时以及堆占用, 压测工具据此计算分配速率
+    @GetMapping("/jvm/metrics")
+    public ResponseEntity<Map<String, Object>> getJvmMetrics() {
+        return ResponseEntity.ok(jvmMetricsService.getMetrics());
+    }
+
+    /// 启动耗时端点
+    /// 返回从 JVM 启动到就绪和第一个请求的时间, 各启动阶段以及耗时最多的 Bean
+    @GetMapping("/startup-timing")
+    public ResponseEntity<Map<String, Object>> getStartupTiming(
+            @RequestParam(required = false, defaultValue = "50") Integer limit) {
+        return ResponseEntity.ok(startupTimingService.getTiming(limit));
+    }
+}
@@ -0,0 +1,57 @@
+package com.yinta.mysqlservice.controller;
+
+import com.yinta.mysqlservice.service.JwtService;
+import com.yinta.mysqlservice.service.ProgressService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.Resource;
+
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@CrossOrigin
+public class ProgressController {
+
+    @Resource
+    private ProgressService progressService;
+
+    @Resource
+    private JwtService jwtService;
+
+    /// 操作进度推送端点
+    /// 以 Server-Sent Events 推送查询或导出的进度: 已读取行数, 已写出行数和字节数, 耗时以及当前阶段
+    /// (queued, execute, fetch, serialize, completed, failed)。
+    /// operationId 为客户端在 /api/query 或 /api/export/* 请求中传入的值, 后台导出任务使用任务ID;
+    /// 只能订阅同一连接发起的操作。浏览器的 EventSource 无法设置请求头, 令牌也可以通过 token 参数传入。
+    ///
+    /// @param authHeader 认证头部, 与 token 参数二选一
+    /// @param token 令牌, 与认证头部二选一
+    /// @param operationId 操作ID
+    /// @return ResponseEntity<SseEmitter> progress 事件流, 令牌无效时返回 401
+    @GetMapping(value = "/progress/{operationId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribe(
+            @RequestHeader(value = "Authorization", required = false) String authHeader,
+            @RequestParam(required = false) String token,
+            @PathVariable String operationId) {
+        String connectionId;
+        try {
+            if (token == null && authHeader != null && authHeader.startsWith("Bearer ")) {
+                token = authHeader.substring(7);
+            }
+            if (token == null) {
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+            }
+            connectionId = jwtService.getConnectionIdFromToken(token);
+        } catch (Exception e) {
+            log.debug("Rejected progress subscription for {}: {}", operationId, e.getMessage());
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        log.debug("Subscribing to progress of operation {}", operationId);
+        return ResponseEntity.ok(progressService.subscribe(connectionId, operationId));
+    }
+}
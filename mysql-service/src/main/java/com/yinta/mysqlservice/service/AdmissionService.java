@@ -0,0 +1,274 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/// 数据库操作准入控制
+/// 按通道(轻量的元数据请求 / 重量的查询和导出请求)分别限制全局, 每个会话以及每个目标服务器的并发数。
+/// 超出限制的请求排队, 空出名额时在会话之间轮转分配, 避免单个会话占满; 队列已满或等待超时时立即拒绝。
+/// 排队的请求占用 Tomcat 线程, 各通道的并发数与队列容量之和必须小于 server.tomcat.threads.max,
+/// 为连接, 进度推送和下载等不经过准入控制的请求留出线程。
+@Slf4j
+@Service
+public class AdmissionService {
+
+    public enum Lane {
+        METADATA, HEAVY
+    }
+
+    @Value("${app.admission.metadata.max-concurrent}")
+    private int metadataMaxConcurrent;
+    @Value("${app.admission.metadata.per-session}")
+    private int metadataPerSession;
+    @Value("${app.admission.metadata.per-target}")
+    private int metadataPerTarget;
+    @Value("${app.admission.metadata.queue-capacity}")
+    private int metadataQueueCapacity;
+    @Value("${app.admission.metadata.max-wait}")
+    private long metadataMaxWait;
+
+    @Value("${app.admission.heavy.max-concurrent}")
+    private int heavyMaxConcurrent;
+    @Value("${app.admission.heavy.per-session}")
+    private int heavyPerSession;
+    @Value("${app.admission.heavy.per-target}")
+    private int heavyPerTarget;
+    @Value("${app.admission.heavy.queue-capacity}")
+    private int heavyQueueCapacity;
+    @Value("${app.admission.heavy.max-wait}")
+    private long heavyMaxWait;
+
+    @Value("${server.tomcat.threads.max}")
+    private int tomcatMaxThreads;
+
+    private final Map<Lane, LaneScheduler> lanes = new EnumMap<>(Lane.class);
+
+    @PostConstruct
+    public void init() {
+        int admitted = metadataMaxConcurrent + metadataQueueCapacity + heavyMaxConcurrent + heavyQueueCapacity;
+        if (admitted >= tomcatMaxThreads) {
+            throw new IllegalStateException("Admission lanes can hold " + admitted
+                    + " requests, which must be less than server.tomcat.threads.max (" + tomcatMaxThreads + ")");
+        }
+        lanes.put(Lane.METADATA, new LaneScheduler(metadataMaxConcurrent, metadataPerSession, metadataPerTarget,
+                metadataQueueCapacity, metadataMaxWait));
+        lanes.put(Lane.HEAVY, new LaneScheduler(heavyMaxConcurrent, heavyPerSession, heavyPerTarget,
+                heavyQueueCapacity, heavyMaxWait));
+    }
+
+    /// 申请执行名额, 必要时排队等待
+    ///
+    /// @param lane 通道
+    /// @param sessionId 会话(连接ID)
+    /// @param target 目标服务器地址(主机:端口)
+    /// @return Permit 执行完毕后必须释放
+    /// @throws AdmissionRejectedException 当队列已满或等待超时时抛出异常
+    public Permit acquire(Lane lane, String sessionId, String target) throws InterruptedException {
+        return lanes.get(lane).acquire(lane, sessionId, target);
+    }
+
+    /// 各通道的并发数, 排队数和拒绝次数
+    /// 只公开计数, 不包含会话或目标服务器的标识
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        for (Map.Entry<Lane, LaneScheduler> lane : lanes.entrySet()) {
+            metrics.put(lane.getKey().name().toLowerCase(), lane.getValue().metrics());
+        }
+        return metrics;
+    }
+
+    public static class AdmissionRejectedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public AdmissionRejectedException(String message) {
+            super(message);
+        }
+    }
+
+    public static class Permit implements AutoCloseable {
+        private final LaneScheduler scheduler;
+        private final String sessionId;
+        private final String target;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(LaneScheduler scheduler, String sessionId, String target) {
+            this.scheduler = scheduler;
+            this.sessionId = sessionId;
+            this.target = target;
+        }
+
+        // 可重复调用, 只释放一次
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                scheduler.release(sessionId, target);
+            }
+        }
+    }
+
+    private static class Waiter {
+        final String sessionId;
+        final String target;
+        boolean granted;
+
+        Waiter(String sessionId, String target) {
+            this.sessionId = sessionId;
+            this.target = target;
+        }
+    }
+
+    private static class LaneScheduler {
+        private final int maxConcurrent;
+        private final int perSession;
+        private final int perTarget;
+        private final int queueCapacity;
+        private final long maxWait;
+
+        private int active;
+        private int queued;
+        private long admitted;
+        private long rejected;
+        private long timedOut;
+        private final Map<String, Integer> activeBySession = new HashMap<>();
+        private final Map<String, Integer> activeByTarget = new HashMap<>();
+        // 按会话分组的等待队列, 迭代顺序即轮转顺序
+        private final LinkedHashMap<String, ArrayDeque<Waiter>> waiting = new LinkedHashMap<>();
+
+        LaneScheduler(int maxConcurrent, int perSession, int perTarget, int queueCapacity, long maxWait) {
+            this.maxConcurrent = maxConcurrent;
+            this.perSession = perSession;
+            this.perTarget = perTarget;
+            this.queueCapacity = queueCapacity;
+            this.maxWait = maxWait;
+        }
+
+        synchronized Permit acquire(Lane lane, String sessionId, String target) throws InterruptedException {
+            // 有空闲名额时, 能运行的等待者都已在 dispatch 中被放行, 新请求可以直接执行
+            if (canRun(sessionId, target) && !waiting.containsKey(sessionId)) {
+                grant(sessionId, target);
+                return new Permit(this, sessionId, target);
+            }
+            if (queued >= queueCapacity) {
+                rejected++;
+                log.warn("Rejected {} request from session {}: queue is full ({} waiting)", lane, sessionId, queued);
+                throw new AdmissionRejectedException("Too many " + lane.name().toLowerCase()
+                        + " requests, please try again later");
+            }
+
+            Waiter waiter = new Waiter(sessionId, target);
+            waiting.computeIfAbsent(sessionId, key -> new ArrayDeque<>()).add(waiter);
+            queued++;
+            long deadline = System.currentTimeMillis() + maxWait;
+            try {
+                while (!waiter.granted) {
+                    long remaining = deadline - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        timedOut++;
+                        log.warn("Timed out {} request from session {} after {}ms", lane, sessionId, maxWait);
+                        throw new AdmissionRejectedException("Timed out waiting for a free "
+                                + lane.name().toLowerCase() + " slot, please try again later");
+                    }
+                    try {
+                        wait(remaining);
+                    } catch (InterruptedException e) {
+                        // 被中断前已经分到名额时交还, 由 release 转给下一个等待者
+                        if (waiter.granted) {
+                            release(sessionId, target);
+                        }
+                        throw e;
+                    }
+                }
+                return new Permit(this, sessionId, target);
+            } finally {
+                if (!waiter.granted) {
+                    removeWaiter(waiter);
+                }
+            }
+        }
+
+        synchronized void release(String sessionId, String target) {
+            active--;
+            decrement(activeBySession, sessionId);
+            decrement(activeByTarget, target);
+            dispatch();
+        }
+
+        // 轮流从每个会话的队首放行能运行的请求, 直到一轮下来没有可放行的
+        private void dispatch() {
+            boolean progressed = true;
+            while (progressed && active < maxConcurrent && queued > 0) {
+                progressed = false;
+                for (String sessionId : new ArrayList<>(waiting.keySet())) {
+                    if (active >= maxConcurrent) {
+                        break;
+                    }
+                    ArrayDeque<Waiter> queue = waiting.get(sessionId);
+                    Waiter head = queue.peek();
+                    if (!canRun(head.sessionId, head.target)) {
+                        continue;
+                    }
+                    queue.poll();
+                    queued--;
+                    // 被放行的会话移到轮转顺序末尾
+                    waiting.remove(sessionId);
+                    if (!queue.isEmpty()) {
+                        waiting.put(sessionId, queue);
+                    }
+                    head.granted = true;
+                    grant(head.sessionId, head.target);
+                    progressed = true;
+                }
+            }
+            notifyAll();
+        }
+
+        private void removeWaiter(Waiter waiter) {
+            ArrayDeque<Waiter> queue = waiting.get(waiter.sessionId);
+            if (queue != null && queue.remove(waiter)) {
+                queued--;
+                if (queue.isEmpty()) {
+                    waiting.remove(waiter.sessionId);
+                }
+            }
+        }
+
+        private boolean canRun(String sessionId, String target) {
+            return active < maxConcurrent
+                    && activeBySession.getOrDefault(sessionId, 0) < perSession
+                    && activeByTarget.getOrDefault(target, 0) < perTarget;
+        }
+
+        private void grant(String sessionId, String target) {
+            active++;
+            admitted++;
+            activeBySession.merge(sessionId, 1, Integer::sum);
+            activeByTarget.merge(target, 1, Integer::sum);
+        }
+
+        private static void decrement(Map<String, Integer> counts, String key) {
+            counts.computeIfPresent(key, (k, count) -> count > 1 ? count - 1 : null);
+        }
+
+        synchronized Map<String, Object> metrics() {
+            Map<String, Object> metrics = new LinkedHashMap<>();
+            metrics.put("active", active);
+            metrics.put("queued", queued);
+            metrics.put("waitingSessions", waiting.size());
+            metrics.put("admitted", admitted);
+            metrics.put("rejected", rejected);
+            metrics.put("timedOut", timedOut);
+            metrics.put("maxConcurrent", maxConcurrent);
+            metrics.put("perSession", perSession);
+            metrics.put("perTarget", perTarget);
+            metrics.put("queueCapacity", queueCapacity);
+            metrics.put("activeTargets", activeByTarget.size());
+            metrics.put("maxActivePerTarget", activeByTarget.values().stream().mapToInt(Integer::intValue).max().orElse(0));
+            return metrics;
+        }
+    }
+}
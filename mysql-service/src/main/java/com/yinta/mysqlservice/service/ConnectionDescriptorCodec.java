@@ -0,0 +1,96 @@
+package com.yinta.mysqlservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yinta.mysqlservice.config.DatabaseConfig;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/// 连接描述加解密
+/// 使用 AES-GCM 加密连接描述(含密码), 以便放入令牌在多个服务节点之间传递。
+/// 加密时传入的关联数据(令牌的连接ID和过期时间)参与认证, 解密时必须一致, 描述不能被搬到其他令牌中使用。
+/// 令牌的签名密钥同样由该密钥派生。所有节点必须配置相同的 app.session.secret,
+/// 密钥没有默认值, 未配置或长度不足时服务无法启动。
+@Service
+public class ConnectionDescriptorCodec {
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+    private static final int MIN_SECRET_LENGTH = 32;
+    private static final String SIGNING_KEY_PURPOSE = "mysql-service/jwt-signing";
+
+    @Value("${app.session.secret}")
+    private String secret;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    private final SecureRandom random = new SecureRandom();
+    private SecretKeySpec key;
+    private byte[] signingKey;
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        if (secret == null || secret.trim().length() < MIN_SECRET_LENGTH) {
+            throw new IllegalStateException("app.session.secret (SESSION_SECRET) must be set to at least "
+                    + MIN_SECRET_LENGTH + " characters");
+        }
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+        key = new SecretKeySpec(digest, "AES");
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        signingKey = mac.doFinal(SIGNING_KEY_PURPOSE.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /// 令牌的签名密钥, 由会话密钥派生, 与加密连接描述的密钥不同
+    public byte[] getSigningKey() {
+        return signingKey.clone();
+    }
+
+    /// 加密连接描述
+    ///
+    /// @param associatedData 关联数据, 解密时必须传入相同的值
+    public String encrypt(DatabaseConfig config, String associatedData) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+            byte[] encrypted = cipher.doFinal(objectMapper.writeValueAsBytes(config));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                    ByteBuffer.allocate(iv.length + encrypted.length).put(iv).put(encrypted).array());
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to encrypt connection descriptor", e);
+        }
+    }
+
+    /// 解密连接描述
+    ///
+    /// @param associatedData 加密时传入的关联数据
+    /// @throws IllegalStateException 当描述被篡改或关联数据不一致时抛出异常
+    public DatabaseConfig decrypt(String descriptor, String associatedData) {
+        try {
+            byte[] data = Base64.getUrlDecoder().decode(descriptor);
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, data, 0, IV_LENGTH));
+            cipher.updateAAD(associatedData.getBytes(StandardCharsets.UTF_8));
+            byte[] json = cipher.doFinal(data, IV_LENGTH, data.length - IV_LENGTH);
+            return objectMapper.readValue(json, DatabaseConfig.class);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid connection descriptor", e);
+        }
+    }
+}
@@ -1,28 +1,129 @@
 package com.yinta.mysqlservice.service;
 
+import com.mysql.cj.conf.PropertyKey;
+import com.mysql.cj.jdbc.JdbcConnection;
 import com.yinta.mysqlservice.config.DatabaseConfig;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Slf4j
 @Service
 public class DatabaseService {
-    private final Map<String, Connection> connections = new HashMap<>();
+    // 批量获取建表语句时每个请求使用的并行连接数
+    private static final int DDL_FETCH_CONNECTIONS = 4;
+    private static final int DDL_FETCH_THREADS = 16;
+    private static final int QUERY_FETCH_SIZE = 1000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+    private static final String PRIMARY_SOURCE = "primary";
+    // DDL 语句中的对象名, 可带库名限定: TABLE/TABLES/VIEW 之后, 索引和触发器的 ON 之后, RENAME 的 TO 之后, 以及 DROP 的逗号列表
+    private static final Pattern DDL_OBJECT = Pattern.compile(
+            "(?:\\btables?|\\bview|\\bon|\\bto|,)\\s+(?:if\\s+(?:not\\s+)?exists\\s+)?"
+                    + "(?:(`(?:[^`]|``)+`|[\\w$]+)\\s*\\.\\s*)?(?:`(?:[^`]|``)+`|[\\w$]+)",
+            Pattern.CASE_INSENSITIVE);
+    // 读取连接上会话状态的函数, 副本连接上没有这些状态
+    private static final Pattern SESSION_STATE_FUNCTION = Pattern.compile(
+            "\\b(?:last_insert_id|found_rows|row_count|connection_id|get_lock|release_lock|release_all_locks"
+                    + "|is_free_lock|is_used_lock)\\s*\\(");
+    // 写入会话状态的 SELECT: 给用户变量赋值, 加命名锁, 设置 LAST_INSERT_ID 或 FOUND_ROWS
+    private static final Pattern SESSION_STATE_SELECT = Pattern.compile(
+            ":=|\\binto\\s+@|\\bget_lock\\s*\\(|\\blast_insert_id\\s*\\(\\s*[^\\s)]|\\bsql_calc_found_rows\\b");
 
-    public String connect(DatabaseConfig config) throws SQLException {
-        String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC",
+    @Resource
+    private ResultMemoryBudget resultMemoryBudget;
+
+    @Resource
+    private SessionStore sessionStore;
+
+    @Resource
+    private ApplicationEventPublisher eventPublisher;
+
+    @Resource
+    private ReplicaRouter replicaRouter;
+
+    // 写操作之后的这段时间内, 同一会话的读操作仍走主库, 保证能读到自己的写入
+    @Value("${app.replica.read-after-write-window}")
+    private long readAfterWriteWindow;
+
+    // 会话连接空闲超过该时间后关闭, 下次使用时按连接描述重新打开
+    @Value("${app.session.idle-timeout}")
+    private long idleTimeout;
+
+    // 连接空闲超过该时间后, 使用前先检查连接是否仍然有效
+    @Value("${app.session.validation-interval}")
+    private long validationInterval;
+
+    // 当前节点上已打开的连接, 会话本身(连接描述)保存在 SessionStore 中
+    private final Map<String, Connection> connections = new ConcurrentHashMap<>();
+    // 当前节点上已打开的副本连接: 连接ID -> 副本标识 -> 连接
+    private final Map<String, Map<String, Connection>> replicaConnections = new ConcurrentHashMap<>();
+    // 在主库连接上创建过会话状态(临时表, 变量, 命名锁等)的会话, 之后的读操作都留在主库;
+    // 主库连接关闭后状态随之消失, 会话重新可以使用副本
+    private final Set<String> primaryPinned = ConcurrentHashMap.newKeySet();
+    // 会话当前使用的数据库, 主库和副本连接在执行前切换到该库
+    private final Map<String, String> catalogs = new ConcurrentHashMap<>();
+    // 会话连接最近一次被取用的时间
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+    // 批量获取建表语句的工作连接, 请求结束后留给同一会话的下一次请求复用, 会话断开或空闲时关闭
+    private final Map<String, WorkerPool> ddlWorkerPools = new ConcurrentHashMap<>();
+    private final ExecutorService ddlFetchExecutor = Executors.newFixedThreadPool(DDL_FETCH_THREADS, new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "ddl-fetch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        ddlFetchExecutor.shutdownNow();
+    }
+
+    private Connection openConnection(DatabaseConfig config, String database) throws SQLException {
+        String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&allowPublicKeyRetrieval=true&serverTimezone=UTC&useCursorFetch=true",
                 config.getHost(),
                 config.getPort(),
-                config.getDatabase() != null ? config.getDatabase() : "");
+                database != null ? database : "");
 
         log.info("Connecting to MySQL with URL: {}", url);
+        Connection connection = DriverManager.getConnection(url, config.getUsername(), config.getPassword());
+        // useCursorFetch 会让驱动把所有 PreparedStatement 改为服务端预处理, 这里恢复为客户端预处理,
+        // 只有 prepareCursorStatement 创建的语句使用服务端游标
+        connection.unwrap(JdbcConnection.class).getPropertySet()
+                .getBooleanProperty(PropertyKey.useServerPrepStmts).setValue(false);
+        return connection;
+    }
+
+    // 服务端预处理并打开游标的 SELECT, 每次从服务器拉取 QUERY_FETCH_SIZE 行, 驱动不会把整个结果集缓存在堆内
+    private static PreparedStatement prepareCursorStatement(Connection connection, String query) throws SQLException {
+        PreparedStatement stmt = connection.unwrap(JdbcConnection.class)
+                .serverPrepareStatement(query, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        stmt.setFetchSize(QUERY_FETCH_SIZE);
+        return stmt;
+    }
+
+    public String connect(DatabaseConfig config) throws SQLException {
         try {
-            Connection connection = DriverManager.getConnection(url, config.getUsername(), config.getPassword());
+            Connection connection = openConnection(config, config.getDatabase());
             String connectionId = UUID.randomUUID().toString();
             connections.put(connectionId, connection);
+            sessionStore.save(connectionId, config);
             log.info("Successfully connected to MySQL. Connection ID: {}", connectionId);
             return connectionId;
         } catch (SQLException e) {
@@ -31,8 +132,49 @@ public class DatabaseService {
         }
     }
 
+    /// 断开连接
+    /// 关闭当前节点上的连接并移除会话; 令牌的撤销由 JwtService 记录在 SessionStore 中
     public void disconnect(String connectionId) {
-        Connection connection = connections.remove(connectionId);
+        sessionStore.remove(connectionId);
+        catalogs.remove(connectionId);
+        closeConnections(connectionId);
+    }
+
+    /// 关闭空闲的会话连接
+    /// 会话本身保留, 下次使用时按连接描述重新打开并切换回会话当前使用的数据库
+    @Scheduled(fixedDelayString = "${app.session.eviction-interval}")
+    public void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<String, Long> entry : lastUsed.entrySet()) {
+            if (now - entry.getValue() >= idleTimeout && lastUsed.remove(entry.getKey(), entry.getValue())) {
+                log.info("Closing idle connection {}", entry.getKey());
+                closeConnections(entry.getKey());
+            }
+        }
+        for (Map.Entry<String, WorkerPool> entry : ddlWorkerPools.entrySet()) {
+            if (now - entry.getValue().lastUsed >= idleTimeout && ddlWorkerPools.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().close();
+            }
+        }
+    }
+
+    private void closeConnections(String connectionId) {
+        lastUsed.remove(connectionId);
+        primaryPinned.remove(connectionId);
+        closeQuietly(connections.remove(connectionId));
+        Map<String, Connection> sessionReplicas = replicaConnections.remove(connectionId);
+        if (sessionReplicas != null) {
+            for (Connection connection : sessionReplicas.values()) {
+                closeQuietly(connection);
+            }
+        }
+        WorkerPool workers = ddlWorkerPools.remove(connectionId);
+        if (workers != null) {
+            workers.close();
+        }
+    }
+
+    private void closeQuietly(Connection connection) {
         if (connection != null) {
             try {
                 connection.close();
@@ -42,92 +184,428 @@ public class DatabaseService {
         }
     }
 
-    public List<String> getDatabases(String connectionId) throws SQLException {
+    // 获取当前节点上的连接, 不存在, 已关闭或已失效时按会话中的连接描述重新打开
+    private Connection getConnection(String connectionId) throws SQLException {
         Connection connection = connections.get(connectionId);
-        if (connection == null) {
+        if (connection != null) {
+            if (isUsable(connectionId, connection)) {
+                lastUsed.put(connectionId, System.currentTimeMillis());
+                return connection;
+            }
+            closeQuietly(connection);
+        }
+
+        DatabaseConfig config = sessionStore.find(connectionId);
+        if (config == null) {
             throw new IllegalStateException("Connection not found");
         }
+        synchronized (connections) {
+            connection = connections.get(connectionId);
+            if (connection == null || !isUsable(connectionId, connection)) {
+                log.info("Opening connection {} from session descriptor", connectionId);
+                connection = openConnection(config, config.getDatabase());
+                connections.put(connectionId, connection);
+            }
+            lastUsed.put(connectionId, System.currentTimeMillis());
+        }
+        return syncCatalog(connectionId, connection);
+    }
+
+    // 最近使用过的连接只检查是否已关闭, 空闲一段时间的连接向服务器确认仍然可用(服务器可能已因 wait_timeout 断开)
+    private boolean isUsable(String connectionId, Connection connection) throws SQLException {
+        if (connection.isClosed()) {
+            return false;
+        }
+        Long used = lastUsed.get(connectionId);
+        if (used != null && System.currentTimeMillis() - used < validationInterval) {
+            return true;
+        }
+        if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+            return true;
+        }
+        log.warn("Connection {} is no longer valid, reopening", connectionId);
+        return false;
+    }
 
-        List<String> databases = new ArrayList<>();
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SHOW DATABASES")) {
-            while (rs.next()) {
-                databases.add(rs.getString(1));
+    // 只读操作使用的连接: 选中的副本或回退的主库; 关闭时只释放副本上的在途计数, 不关闭连接
+    private final class ReadConnection implements AutoCloseable {
+        private final Connection connection;
+        private final ReplicaRouter.Endpoint endpoint;
+
+        private ReadConnection(Connection connection, ReplicaRouter.Endpoint endpoint) {
+            this.connection = connection;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public void close() {
+            if (endpoint != null) {
+                replicaRouter.release(endpoint);
             }
         }
-        return databases;
     }
 
-    public Map<String, Object> getTables(String connectionId, String database, Integer offset, Integer limit) throws SQLException {
-        Connection connection = connections.get(connectionId);
-        if (connection == null) {
+    @FunctionalInterface
+    private interface ReadOperation<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    // 获取只读连接, 没有可用副本或副本连接失败时回退到主库
+    private ReadConnection getReadConnection(String connectionId) throws SQLException {
+        DatabaseConfig config = sessionStore.find(connectionId);
+        if (config == null) {
             throw new IllegalStateException("Connection not found");
         }
-
-        connection.setCatalog(database);
-        Map<String, Object> result = new HashMap<>();
-        
-        // 获取总表数
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = '" + database + "'")) {
-            if (rs.next()) {
-                result.put("total", rs.getInt(1));
+        if (canUseReplica(connectionId, config)) {
+            ReplicaRouter.Route route = replicaRouter.acquire(config);
+            if (route != null) {
+                ReplicaRouter.Endpoint endpoint = route.getEndpoint();
+                try {
+                    return new ReadConnection(getReplicaConnection(connectionId, config, route), endpoint);
+                } catch (SQLException e) {
+                    replicaRouter.release(endpoint);
+                    replicaRouter.markDown(endpoint, e);
+                    log.warn("Failed to connect to replica {}, falling back to primary", endpoint.getKey());
+                }
             }
         }
+        return new ReadConnection(getConnection(connectionId), null);
+    }
 
-        // 构建分页查询
-        StringBuilder query = new StringBuilder("SELECT table_name FROM information_schema.tables WHERE table_schema = '" + database + "'");
-        if (limit != null) {
-            query.append(" LIMIT ").append(limit);
-            if (offset != null) {
-                query.append(" OFFSET ").append(offset);
+    // 会话在主库上有未结束的事务, 创建过会话状态, 或在读写窗口内写过数据时, 读操作留在主库
+    // 最近写入时间保存在 SessionStore 中, 使用集中存储时请求落到其他节点也能遵守
+    private boolean canUseReplica(String connectionId, DatabaseConfig config) throws SQLException {
+        if (config.getReplicas() == null || config.getReplicas().isEmpty()) {
+            return false;
+        }
+        if (primaryPinned.contains(connectionId) || inTransaction(connectionId)) {
+            return false;
+        }
+        Long lastWrite = sessionStore.findLastWrite(connectionId);
+        return lastWrite == null || System.currentTimeMillis() - lastWrite >= readAfterWriteWindow;
+    }
+
+    // 关闭了自动提交(SET autocommit=0)或执行了 START TRANSACTION / BEGIN 且尚未提交或回滚
+    private boolean inTransaction(String connectionId) throws SQLException {
+        Connection connection = connections.get(connectionId);
+        if (connection == null || connection.isClosed()) {
+            return false;
+        }
+        return !connection.getAutoCommit()
+                || connection.unwrap(JdbcConnection.class).getSession().getServerSession().inTransactionOnServer();
+    }
+
+    // 副本连接使用会话自己的副本凭据打开, 副本标识包含凭据摘要, 凭据变化后不会复用旧连接
+    private Connection getReplicaConnection(String connectionId, DatabaseConfig config,
+                                            ReplicaRouter.Route route) throws SQLException {
+        String key = route.getEndpoint().getKey();
+        Map<String, Connection> sessionReplicas = replicaConnections.computeIfAbsent(connectionId,
+                k -> new ConcurrentHashMap<>());
+        Connection connection = sessionReplicas.get(key);
+        if (connection == null || connection.isClosed()) {
+            synchronized (sessionReplicas) {
+                connection = sessionReplicas.get(key);
+                if (connection == null || connection.isClosed()) {
+                    String catalog = catalogs.get(connectionId);
+                    connection = openConnection(route.getConfig(), catalog != null ? catalog : config.getDatabase());
+                    connection.setReadOnly(true);
+                    sessionReplicas.put(key, connection);
+                }
             }
         }
+        return syncCatalog(connectionId, connection);
+    }
 
-        List<String> tables = new ArrayList<>();
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query.toString())) {
-            while (rs.next()) {
-                tables.add(rs.getString(1));
+    // 在副本上执行只读操作, 副本连接中断时标记故障并在主库上重试一次
+    private <T> T read(String connectionId, ReadOperation<T> operation) throws SQLException {
+        try (ReadConnection read = getReadConnection(connectionId)) {
+            try {
+                return operation.apply(read.connection);
+            } catch (SQLException e) {
+                if (read.endpoint == null || !isConnectionFailure(e)) {
+                    throw e;
+                }
+                onReplicaFailure(connectionId, read.endpoint, e);
             }
         }
-        
-        result.put("tables", tables);
-        return result;
+        return operation.apply(getConnection(connectionId));
     }
 
-    public List<Map<String, Object>> executeQuery(String connectionId, String query) throws SQLException {
-        Connection connection = connections.get(connectionId);
-        if (connection == null) {
+    private void onReplicaFailure(String connectionId, ReplicaRouter.Endpoint endpoint, SQLException e) {
+        replicaRouter.markDown(endpoint, e);
+        Map<String, Connection> sessionReplicas = replicaConnections.get(connectionId);
+        if (sessionReplicas != null) {
+            closeQuietly(sessionReplicas.remove(endpoint.getKey()));
+        }
+        log.warn("Replica {} failed, retrying on primary: {}", endpoint.getKey(), e.getMessage());
+    }
+
+    // SQLState 以 08 开头的是连接类错误
+    private static boolean isConnectionFailure(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    // 切换到会话当前使用的数据库
+    private Connection syncCatalog(String connectionId, Connection connection) throws SQLException {
+        String catalog = catalogs.get(connectionId);
+        if (catalog != null && !catalog.equals(connection.getCatalog())) {
+            connection.setCatalog(catalog);
+        }
+        return connection;
+    }
+
+    // 切换数据库并记录到会话上, 之后在主库或其他副本上执行的语句也使用该库
+    private void useDatabase(String connectionId, Connection connection, String database) throws SQLException {
+        connection.setCatalog(database);
+        if (database != null) {
+            catalogs.put(connectionId, database);
+        }
+    }
+
+    /// 获取连接所指向的服务器标识(用户@主机:端口), 用于按目标服务器区分缓存和限流
+    public String getServerKey(String connectionId) {
+        DatabaseConfig config = sessionStore.find(connectionId);
+        if (config == null) {
+            throw new IllegalStateException("Connection not found");
+        }
+        return config.getUsername() + "@" + config.getHost() + ":" + config.getPort();
+    }
+
+    /// 获取连接所指向的服务器地址(主机:端口), 不区分用户, 用于按服务器限流
+    public String getHostKey(String connectionId) {
+        DatabaseConfig config = sessionStore.find(connectionId);
+        if (config == null) {
             throw new IllegalStateException("Connection not found");
         }
+        return config.getHost() + ":" + config.getPort();
+    }
+
+    public String getCurrentDatabase(String connectionId) throws SQLException {
+        Connection connection = getConnection(connectionId);
+        return connection.getCatalog();
+    }
+
+    public List<String> getDatabases(String connectionId) throws SQLException {
+        return read(connectionId, connection -> {
+            List<String> databases = new ArrayList<>();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SHOW DATABASES")) {
+                while (rs.next()) {
+                    databases.add(rs.getString(1));
+                }
+            }
+            return databases;
+        });
+    }
+
+    public Map<String, Object> getTables(String connectionId, String database, Integer offset, Integer limit) throws SQLException {
+        return read(connectionId, connection -> {
+            useDatabase(connectionId, connection, database);
+            Map<String, Object> result = new HashMap<>();
+
+            // 获取总表数
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM information_schema.tables WHERE table_schema = '" + database + "'")) {
+                if (rs.next()) {
+                    result.put("total", rs.getInt(1));
+                }
+            }
+
+            // 构建分页查询
+            StringBuilder query = new StringBuilder("SELECT table_name FROM information_schema.tables WHERE table_schema = '" + database + "'");
+            if (limit != null) {
+                query.append(" LIMIT ").append(limit);
+                if (offset != null) {
+                    query.append(" OFFSET ").append(offset);
+                }
+            }
 
+            List<String> tables = new ArrayList<>();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery(query.toString())) {
+                while (rs.next()) {
+                    tables.add(rs.getString(1));
+                }
+            }
+
+            result.put("tables", tables);
+            return result;
+        });
+    }
+
+    /// 执行查询
+    /// SELECT 结果通过服务端游标分批读取, 受 ResultMemoryBudget 限制: 超出内存阈值的行溢出到临时文件,
+    /// 超出行数或字节上限时截断并在结果上标记。调用方使用完毕后必须关闭返回的结果。
+    public QueryResult executeQuery(String connectionId, String query) throws SQLException {
+        return executeQuery(connectionId, query, new OperationProgress(null));
+    }
+
+    /// 执行查询, 并把执行阶段和已读取的行数记录到 progress 中
+    /// SELECT 发往只读副本(加锁或写入变量/文件的 SELECT 除外), 其他语句在主库上执行
+    public QueryResult executeQuery(String connectionId, String query, OperationProgress progress) throws SQLException {
         log.info("Executing query: {}", query);
         
         // Check if the query is a SELECT query
-        String trimmedQuery = query.trim().toLowerCase();
+        String trimmedQuery = query.trim().toLowerCase(Locale.ROOT);
         if (!trimmedQuery.startsWith("select")) {
-            return executeUpdate(connectionId, query);
+            progress.setPhase(OperationProgress.PHASE_EXECUTE);
+            return QueryResult.of(executeUpdate(connectionId, query));
         }
 
-        List<Map<String, Object>> results = new ArrayList<>();
-        List<String> columnOrder = new ArrayList<>();
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery(query)) {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
+        trackSessionState(connectionId, trimmedQuery);
+        try (ReadConnection read = isReplicaSafe(trimmedQuery) ? getReadConnection(connectionId)
+                : new ReadConnection(getConnection(connectionId), null)) {
+            try {
+                return executeSelect(read.connection, query, progress);
+            } catch (SQLException e) {
+                // 开始读取行之前副本连接中断时可以改到主库重试
+                if (read.endpoint == null || !isConnectionFailure(e)
+                        || OperationProgress.PHASE_FETCH.equals(progress.getPhase())) {
+                    throw e;
+                }
+                onReplicaFailure(connectionId, read.endpoint, e);
+            }
+        }
+        return executeSelect(getConnection(connectionId), query, progress);
+    }
+
+    /// 为后台任务执行 SELECT
+    /// 使用单独打开的连接并固定在指定的数据库上, 不与会话连接上的前台请求共用; 可以使用副本时优先连接副本。
+    /// 调用方使用完毕后必须关闭返回的结果。
+    ///
+    /// @param connectionId 连接ID, 用于取得会话的连接描述
+    /// @param catalog 执行查询的数据库, 通常是提交任务时会话所在的库
+    /// @throws IllegalArgumentException 当语句不是 SELECT 时抛出异常
+    public QueryResult executeDetachedQuery(String connectionId, String catalog, String query,
+                                            OperationProgress progress) throws SQLException {
+        String trimmedQuery = query.trim().toLowerCase(Locale.ROOT);
+        if (!trimmedQuery.startsWith("select")) {
+            throw new IllegalArgumentException("Only SELECT statements can run in the background");
+        }
+        DatabaseConfig config = sessionStore.find(connectionId);
+        if (config == null) {
+            throw new IllegalStateException("Connection not found");
+        }
 
-            // Store column names in order
-            for (int i = 1; i <= columnCount; i++) {
-                columnOrder.add(metaData.getColumnName(i));
+        log.info("Executing detached query on {}: {}", catalog, query);
+        ReplicaRouter.Route route = isReplicaSafe(trimmedQuery) && canUseReplica(connectionId, config)
+                ? replicaRouter.acquire(config) : null;
+        DatabaseConfig source = route != null ? route.getConfig() : config;
+        try (Connection connection = openWorkerConnection(source, config, catalog)) {
+            return executeSelect(connection, query, progress);
+        } catch (SQLException e) {
+            log.error("Error executing detached query: {}", e.getMessage());
+            throw new SQLException("Query execution failed: " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            if (route != null) {
+                replicaRouter.release(route.getEndpoint());
             }
+        }
+    }
 
-            while (rs.next()) {
-                Map<String, Object> row = new LinkedHashMap<>();  // Use LinkedHashMap to maintain order
-                for (String columnName : columnOrder) {
-                    row.put(columnName, rs.getObject(columnName));
+    /// 打开 SELECT 的服务端游标, 由调用方逐行读取并直接序列化, 结果不在服务端缓存
+    /// 调用方使用完毕后必须关闭返回的游标
+    ///
+    /// @return QueryCursor 非 SELECT 语句不执行并返回 null, 调用方应改用 executeQuery
+    public QueryCursor openQuery(String connectionId, String query, OperationProgress progress) throws SQLException {
+        String trimmedQuery = query.trim().toLowerCase(Locale.ROOT);
+        if (!trimmedQuery.startsWith("select")) {
+            return null;
+        }
+
+        log.info("Executing query: {}", query);
+        trackSessionState(connectionId, trimmedQuery);
+        ReadConnection read = isReplicaSafe(trimmedQuery) ? getReadConnection(connectionId)
+                : new ReadConnection(getConnection(connectionId), null);
+        try {
+            return openCursor(read, query, progress);
+        } catch (SQLException e) {
+            read.close();
+            if (read.endpoint == null || !isConnectionFailure(e)) {
+                log.error("Error executing query: {}", e.getMessage());
+                throw new SQLException("Query execution failed: " + e.getMessage(), e.getSQLState(), e);
+            }
+            onReplicaFailure(connectionId, read.endpoint, e);
+        }
+        try {
+            return openCursor(new ReadConnection(getConnection(connectionId), null), query, progress);
+        } catch (SQLException e) {
+            log.error("Error executing query: {}", e.getMessage());
+            throw new SQLException("Query execution failed: " + e.getMessage(), e.getSQLState(), e);
+        }
+    }
+
+    private QueryCursor openCursor(ReadConnection read, String query, OperationProgress progress) throws SQLException {
+        PreparedStatement stmt = prepareCursorStatement(read.connection, query);
+        try {
+            if (resultMemoryBudget.getMaxRows() < Integer.MAX_VALUE) {
+                stmt.setMaxRows((int) resultMemoryBudget.getMaxRows() + 1);
+            }
+            progress.setPhase(OperationProgress.PHASE_EXECUTE);
+            return new QueryCursor(stmt, stmt.executeQuery(), read::close);
+        } catch (SQLException e) {
+            stmt.close();
+            throw e;
+        }
+    }
+
+    // 加锁, 把结果写入变量/文件, 或读写会话状态(用户变量, 系统变量, LAST_INSERT_ID 等)的 SELECT 只能在主库上执行
+    static boolean isReplicaSafe(String trimmedQuery) {
+        String normalized = trimmedQuery.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        return !normalized.contains(" for update") && !normalized.contains(" for share")
+                && !normalized.contains(" lock in share mode") && !normalized.contains(" into ")
+                && !normalized.contains("@") && !SESSION_STATE_FUNCTION.matcher(normalized).find();
+    }
+
+    // 会在连接上留下状态的语句: 临时表, SET(用户变量, 会话变量, 字符集等), 表锁, 预处理语句,
+    // 存储过程调用, 以及给变量赋值或加命名锁的 SELECT
+    static boolean createsSessionState(String trimmedQuery) {
+        String normalized = trimmedQuery.toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        if (normalized.startsWith("create temporary ") || normalized.startsWith("set ")
+                || normalized.startsWith("lock table") || normalized.startsWith("prepare ")
+                || normalized.startsWith("call ")) {
+            return true;
+        }
+        return SESSION_STATE_SELECT.matcher(normalized).find();
+    }
+
+    private void trackSessionState(String connectionId, String trimmedQuery) {
+        if (createsSessionState(trimmedQuery) && primaryPinned.add(connectionId)) {
+            log.info("Connection {} created session state, reads stay on the primary", connectionId);
+        }
+    }
+
+    private QueryResult executeSelect(Connection connection, String query, OperationProgress progress) throws SQLException {
+        List<String> columnOrder = new ArrayList<>();
+        QueryResult results = null;
+        try (PreparedStatement stmt = prepareCursorStatement(connection, query)) {
+            if (resultMemoryBudget.getMaxRows() < Integer.MAX_VALUE) {
+                // 多取一行用于判断是否被截断
+                stmt.setMaxRows((int) resultMemoryBudget.getMaxRows() + 1);
+            }
+            progress.setPhase(OperationProgress.PHASE_EXECUTE);
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
+
+                // Store column names in order
+                for (int i = 1; i <= columnCount; i++) {
+                    columnOrder.add(metaData.getColumnName(i));
+                }
+
+                results = new QueryResult(columnOrder, resultMemoryBudget);
+                Object[] values = new Object[columnCount];
+                progress.setPhase(OperationProgress.PHASE_FETCH);
+                while (rs.next()) {
+                    for (int i = 0; i < columnCount; i++) {
+                        values[i] = rs.getObject(i + 1);
+                    }
+                    if (!results.append(values)) {
+                        break;
+                    }
+                    progress.rowFetched();
                 }
-                results.add(row);
+                results.finish();
             }
             
             // Add column order to the first row as metadata
@@ -137,22 +615,27 @@ public class DatabaseService {
             
             log.info("Query executed successfully, returned {} rows", results.size());
             return results;
-        } catch (SQLException e) {
+        } catch (SQLException | IOException e) {
+            if (results != null) {
+                results.close();
+            }
             log.error("Error executing query: {}", e.getMessage());
-            throw new SQLException("Query execution failed: " + e.getMessage());
+            String sqlState = e instanceof SQLException ? ((SQLException) e).getSQLState() : null;
+            throw new SQLException("Query execution failed: " + e.getMessage(), sqlState, e);
         }
     }
 
     public List<Map<String, Object>> executeUpdate(String connectionId, String query) throws SQLException {
-        Connection connection = connections.get(connectionId);
-        if (connection == null) {
-            throw new IllegalStateException("Connection not found");
-        }
+        Connection connection = getConnection(connectionId);
 
         log.info("Executing update query: {}", query);
         try (Statement stmt = connection.createStatement()) {
             int rowsAffected = stmt.executeUpdate(query);
             log.info("Update executed successfully, {} rows affected", rowsAffected);
+            sessionStore.recordWrite(connectionId, System.currentTimeMillis());
+            trackSessionState(connectionId, query.trim());
+            trackUseStatement(connectionId, query);
+            publishSchemaChange(connectionId, connection, query);
             
             // Return result in the same format as executeQuery
             List<Map<String, Object>> results = new ArrayList<>();
@@ -166,74 +649,159 @@ public class DatabaseService {
         }
     }
 
-    public void selectDatabase(String connectionId, String database) throws SQLException {
-        Connection connection = connections.get(connectionId);
-        if (connection == null) {
-            throw new IllegalStateException("Connection not found");
-        }
-        connection.setCatalog(database);
+    /// 切换当前数据库
+    ///
+    /// @return DatabaseConfig 更新后的连接描述, 调用方应据此重新签发令牌, 使其他节点也使用新的数据库
+    public DatabaseConfig selectDatabase(String connectionId, String database) throws SQLException {
+        Connection connection = getConnection(connectionId);
+        useDatabase(connectionId, connection, database);
+
+        DatabaseConfig config = sessionStore.find(connectionId);
+        DatabaseConfig updated = new DatabaseConfig();
+        updated.setHost(config.getHost());
+        updated.setPort(config.getPort());
+        updated.setUsername(config.getUsername());
+        updated.setPassword(config.getPassword());
+        updated.setDatabase(database);
+        updated.setReplicas(config.getReplicas());
+        sessionStore.save(connectionId, updated);
+        return updated;
     }
 
     public List<Map<String, Object>> getTableStructure(String connectionId, String database, String table) throws SQLException {
-        Connection connection = connections.get(connectionId);
-        if (connection == null) {
-            throw new IllegalStateException("Connection not found");
-        }
+        return read(connectionId, connection -> {
+            useDatabase(connectionId, connection, database);
+            List<Map<String, Object>> columns = new ArrayList<>();
 
-        connection.setCatalog(database);
-        List<Map<String, Object>> columns = new ArrayList<>();
-        
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SHOW FULL COLUMNS FROM `" + table + "`")) {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SHOW FULL COLUMNS FROM " + quoteIdentifier(table))) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
 
-            while (rs.next()) {
-                Map<String, Object> column = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    column.put(metaData.getColumnName(i), rs.getObject(i));
+                while (rs.next()) {
+                    Map<String, Object> column = new HashMap<>();
+                    for (int i = 1; i <= columnCount; i++) {
+                        column.put(metaData.getColumnName(i), rs.getObject(i));
+                    }
+                    columns.add(column);
                 }
-                columns.add(column);
             }
-        }
-        return columns;
+            return columns;
+        });
     }
 
     public List<Map<String, Object>> getTableIndexes(String connectionId, String database, String table) throws SQLException {
-        Connection connection = connections.get(connectionId);
-        if (connection == null) {
-            throw new IllegalStateException("Connection not found");
-        }
+        return read(connectionId, connection -> {
+            useDatabase(connectionId, connection, database);
+            List<Map<String, Object>> indexes = new ArrayList<>();
 
-        connection.setCatalog(database);
-        List<Map<String, Object>> indexes = new ArrayList<>();
-        
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SHOW INDEX FROM `" + table + "`")) {
-            ResultSetMetaData metaData = rs.getMetaData();
-            int columnCount = metaData.getColumnCount();
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SHOW INDEX FROM " + quoteIdentifier(table))) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                int columnCount = metaData.getColumnCount();
 
-            while (rs.next()) {
-                Map<String, Object> index = new HashMap<>();
-                for (int i = 1; i <= columnCount; i++) {
-                    index.put(metaData.getColumnName(i), rs.getObject(i));
+                while (rs.next()) {
+                    Map<String, Object> index = new HashMap<>();
+                    for (int i = 1; i <= columnCount; i++) {
+                        index.put(metaData.getColumnName(i), rs.getObject(i));
+                    }
+                    indexes.add(index);
                 }
-                indexes.add(index);
             }
-        }
-        return indexes;
+            return indexes;
+        });
     }
 
     public void alterTable(String connectionId, String database, String table, String alterSql) throws SQLException {
-        Connection connection = connections.get(connectionId);
-        if (connection == null) {
-            throw new IllegalStateException("Connection not found");
-        }
+        Connection connection = getConnection(connectionId);
 
-        connection.setCatalog(database);
+        useDatabase(connectionId, connection, database);
         try (Statement stmt = connection.createStatement()) {
             stmt.executeUpdate(alterSql);
         }
+        sessionStore.recordWrite(connectionId, System.currentTimeMillis());
+        eventPublisher.publishEvent(new SchemaChangedEvent(connectionId, database));
+    }
+
+    // 通过查询执行的 USE 语句同样记录到会话上
+    private void trackUseStatement(String connectionId, String query) {
+        String statement = query.trim();
+        if (statement.length() > 4 && statement.substring(0, 4).equalsIgnoreCase("use ")) {
+            String database = statement.substring(4).replace(";", "").replace("`", "").trim();
+            if (!database.isEmpty()) {
+                catalogs.put(connectionId, database);
+            }
+        }
+    }
+
+    // DDL 语句执行后通知表名搜索索引刷新
+    private void publishSchemaChange(String connectionId, Connection connection, String query) throws SQLException {
+        String statement = query.trim().toLowerCase(Locale.ROOT).replaceAll("\\s+", " ");
+        if (statement.startsWith("create database") || statement.startsWith("create schema")
+                || statement.startsWith("drop database") || statement.startsWith("drop schema")) {
+            eventPublisher.publishEvent(new SchemaChangedEvent(connectionId, null));
+        } else if (statement.startsWith("create") || statement.startsWith("drop")
+                || statement.startsWith("alter") || statement.startsWith("rename")) {
+            boolean multiple = statement.startsWith("drop") || statement.startsWith("rename");
+            for (String schema : ddlSchemas(query.trim(), connection.getCatalog(), multiple)) {
+                eventPublisher.publishEvent(new SchemaChangedEvent(connectionId, schema));
+            }
+        }
+    }
+
+    // DDL 语句涉及的库: 对象名带库名限定时取限定的库, 否则为当前库
+    // 只看列定义和 AS SELECT 之前的部分; CREATE 和 ALTER 只取第一个对象名, DROP 和 RENAME 可以涉及多个
+    static Set<String> ddlSchemas(String query, String catalog, boolean multiple) {
+        String head = query.split("\\(|\\s[aA][sS]\\s", 2)[0];
+        Set<String> schemas = new LinkedHashSet<>();
+        Matcher matcher = DDL_OBJECT.matcher(head);
+        while (matcher.find()) {
+            String qualifier = matcher.group(1);
+            if (qualifier == null) {
+                schemas.add(catalog);
+            } else if (qualifier.startsWith("`")) {
+                schemas.add(qualifier.substring(1, qualifier.length() - 1).replace("``", "`"));
+            } else {
+                schemas.add(qualifier);
+            }
+            if (!multiple) {
+                break;
+            }
+        }
+        if (schemas.isEmpty()) {
+            schemas.add(catalog);
+        }
+        return schemas;
+    }
+
+    /// 获取表统计信息
+    /// 一次扫描 information_schema.TABLES, 返回库名, 表名以及近似行数和数据大小
+    ///
+    /// @param connectionId 连接ID
+    /// @param schema 库名, 为 null 时扫描所有库
+    /// @return List<Map<String, Object>> 每项包含 schema, table, rows, dataLength
+    public List<Map<String, Object>> getTableStatistics(String connectionId, String schema) throws SQLException {
+        String sql = "SELECT TABLE_SCHEMA, TABLE_NAME, TABLE_ROWS, DATA_LENGTH FROM information_schema.TABLES"
+                + (schema != null ? " WHERE TABLE_SCHEMA = ?" : "");
+        return read(connectionId, connection -> {
+            List<Map<String, Object>> tables = new ArrayList<>();
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                if (schema != null) {
+                    stmt.setString(1, schema);
+                }
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        Map<String, Object> table = new HashMap<>();
+                        table.put("schema", rs.getString(1));
+                        table.put("table", rs.getString(2));
+                        table.put("rows", rs.getObject(3) != null ? rs.getLong(3) : null);
+                        table.put("dataLength", rs.getObject(4) != null ? rs.getLong(4) : null);
+                        tables.add(table);
+                    }
+                }
+            }
+            return tables;
+        });
     }
 
     /// 获取建表语句方法
@@ -245,18 +813,215 @@ public class DatabaseService {
     /// @return String 建表语句
     /// @throws SQLException 当获取失败时抛出异常
     public String getCreateTableStatement(String connectionId, String database, String table) throws SQLException {
-        Connection connection = connections.get(connectionId);
-        if (connection == null) {
+        return read(connectionId, connection -> {
+            useDatabase(connectionId, connection, database);
+            try (Statement stmt = connection.createStatement();
+                 ResultSet rs = stmt.executeQuery("SHOW CREATE TABLE " + quoteIdentifier(table))) {
+                if (rs.next()) {
+                    return rs.getString(2); // 建表语句在第二列
+                }
+                throw new SQLException("Failed to get create table statement");
+            }
+        });
+    }
+
+    /// 批量获取建表语句方法
+    /// 通过少量并行连接并发执行 SHOW CREATE TABLE, 每完成一张表回调一次结果。
+    /// 工作连接按会话和来源(主库或副本)保留, 同一会话的后续请求直接复用, 不再每次新建连接;
+    /// 所有请求的工作线程共用一个固定大小的线程池, 同时打开的工作连接数不会超过线程数。
+    ///
+    /// @param connectionId 连接ID
+    /// @param database 数据库名称
+    /// @param tables 表名列表, 为空时获取该库下的所有表
+    /// @param sink 结果回调, 按完成顺序在调用线程中执行; 每项包含 table 以及 statement 或 error
+    /// @throws SQLException 当获取表列表失败时抛出异常
+    public void streamCreateTableStatements(String connectionId, String database, List<String> tables,
+                                            Consumer<Map<String, Object>> sink) throws SQLException, InterruptedException {
+        DatabaseConfig config = sessionStore.find(connectionId);
+        if (config == null) {
             throw new IllegalStateException("Connection not found");
         }
 
-        connection.setCatalog(database);
-        try (Statement stmt = connection.createStatement();
-             ResultSet rs = stmt.executeQuery("SHOW CREATE TABLE `" + table + "`")) {
-            if (rs.next()) {
-                return rs.getString(2); // 建表语句在第二列
+        List<String> targets = tables == null || tables.isEmpty() ? getTableNames(connectionId, database) : tables;
+        if (targets.isEmpty()) {
+            return;
+        }
+
+        // 整个批次使用同一个副本, 工作线程连不上副本时改连主库
+        ReplicaRouter.Route route = canUseReplica(connectionId, config) ? replicaRouter.acquire(config) : null;
+        DatabaseConfig source = route != null ? route.getConfig() : config;
+        String sourceKey = route != null ? route.getEndpoint().getKey() : PRIMARY_SOURCE;
+        Queue<String> pending = new ConcurrentLinkedQueue<>(targets);
+        BlockingQueue<Map<String, Object>> completed = new LinkedBlockingQueue<>();
+        int workers = Math.min(DDL_FETCH_CONNECTIONS, targets.size());
+        AtomicInteger liveWorkers = new AtomicInteger(workers);
+        List<Future<?>> futures = new ArrayList<>(workers);
+        for (int i = 0; i < workers; i++) {
+            futures.add(ddlFetchExecutor.submit(() -> fetchCreateTableStatements(connectionId, sourceKey, source, config,
+                    database, pending, completed, liveWorkers)));
+        }
+
+        log.info("Fetching {} create table statements from {} with {} connections", targets.size(), database, workers);
+        try {
+            for (int done = 0; done < targets.size(); done++) {
+                sink.accept(completed.take());
+            }
+        } finally {
+            // 客户端断开或出错时让工作线程尽快退出
+            pending.clear();
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            if (route != null) {
+                replicaRouter.release(route.getEndpoint());
+            }
+        }
+    }
+
+    private Connection openWorkerConnection(DatabaseConfig source, DatabaseConfig primary, String database)
+            throws SQLException {
+        try {
+            return openConnection(source, database);
+        } catch (SQLException e) {
+            if (source == primary) {
+                throw e;
+            }
+            log.warn("Failed to connect to replica {}:{}, falling back to primary: {}",
+                    source.getHost(), source.getPort(), e.getMessage());
+            return openConnection(primary, database);
+        }
+    }
+
+    // 每张取出的表都必须放入一条结果, 否则调用方会一直等待
+    private void fetchCreateTableStatements(String connectionId, String sourceKey, DatabaseConfig source,
+                                            DatabaseConfig primary, String database, Queue<String> pending,
+                                            BlockingQueue<Map<String, Object>> completed, AtomicInteger liveWorkers) {
+        String table = null;
+        String failure = "DDL fetch worker exited unexpectedly";
+        String key = sourceKey;
+        Connection connection = null;
+        try {
+            try {
+                connection = borrowWorkerConnection(connectionId, key, source, database);
+            } catch (SQLException e) {
+                if (source == primary) {
+                    throw e;
+                }
+                log.warn("Failed to connect to replica {}:{}, falling back to primary: {}",
+                        source.getHost(), source.getPort(), e.getMessage());
+                key = PRIMARY_SOURCE;
+                connection = borrowWorkerConnection(connectionId, key, primary, database);
+            }
+            try (Statement stmt = connection.createStatement()) {
+                while ((table = pending.poll()) != null) {
+                    Map<String, Object> entry = new LinkedHashMap<>();
+                    entry.put("table", table);
+                    try (ResultSet rs = stmt.executeQuery("SHOW CREATE TABLE " + quoteIdentifier(table))) {
+                        if (rs.next()) {
+                            entry.put("statement", rs.getString(2));
+                        } else {
+                            entry.put("error", "Failed to get create table statement");
+                        }
+                    } catch (SQLException e) {
+                        entry.put("error", e.getMessage());
+                    }
+                    completed.add(entry);
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.error("DDL fetch worker failed: {}", e.getMessage());
+            failure = e.getMessage();
+            if (table != null) {
+                completed.add(errorEntry(table, failure));
+            }
+        } finally {
+            if (connection != null) {
+                returnWorkerConnection(connectionId, key, connection);
+            }
+            // 最后一个退出的工作线程负责把剩余的表标记为失败
+            if (liveWorkers.decrementAndGet() == 0) {
+                String remaining;
+                while ((remaining = pending.poll()) != null) {
+                    completed.add(errorEntry(remaining, failure));
+                }
+            }
+        }
+    }
+
+    // 取出会话保留的空闲工作连接, 没有可用的连接时新建
+    private Connection borrowWorkerConnection(String connectionId, String sourceKey, DatabaseConfig source,
+                                              String database) throws SQLException {
+        WorkerPool pool = ddlWorkerPools.computeIfAbsent(connectionId, key -> new WorkerPool());
+        pool.lastUsed = System.currentTimeMillis();
+        Connection connection;
+        while ((connection = pool.idle(sourceKey).pollFirst()) != null) {
+            if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                connection.setCatalog(database);
+                return connection;
+            }
+            closeQuietly(connection);
+        }
+        return openConnection(source, database);
+    }
+
+    // 归还工作连接, 每个来源最多保留 DDL_FETCH_CONNECTIONS 个; 会话已关闭或已保留足够的连接时直接关闭
+    private void returnWorkerConnection(String connectionId, String sourceKey, Connection connection) {
+        WorkerPool pool = ddlWorkerPools.get(connectionId);
+        if (pool == null || !pool.idle(sourceKey).offerFirst(connection)) {
+            closeQuietly(connection);
+            return;
+        }
+        pool.lastUsed = System.currentTimeMillis();
+        if (ddlWorkerPools.get(connectionId) != pool) {
+            // 归还期间会话被关闭
+            pool.close();
+        }
+    }
+
+    // 一个会话的空闲工作连接: 来源(主库或副本标识) -> 空闲连接
+    private final class WorkerPool {
+        private final Map<String, BlockingDeque<Connection>> idle = new ConcurrentHashMap<>();
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private BlockingDeque<Connection> idle(String sourceKey) {
+            return idle.computeIfAbsent(sourceKey, key -> new LinkedBlockingDeque<>(DDL_FETCH_CONNECTIONS));
+        }
+
+        private void close() {
+            for (BlockingDeque<Connection> connections : idle.values()) {
+                Connection connection;
+                while ((connection = connections.pollFirst()) != null) {
+                    closeQuietly(connection);
+                }
             }
-            throw new SQLException("Failed to get create table statement");
         }
     }
-} 
\ No newline at end of file
+
+    private static Map<String, Object> errorEntry(String table, String error) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("table", table);
+        entry.put("error", error);
+        return entry;
+    }
+
+    // 反引号包围的标识符, 名称中的反引号需要成对转义
+    private static String quoteIdentifier(String name) {
+        return "`" + name.replace("`", "``") + "`";
+    }
+
+    private List<String> getTableNames(String connectionId, String database) throws SQLException {
+        return read(connectionId, connection -> {
+            List<String> tables = new ArrayList<>();
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "SELECT table_name FROM information_schema.tables WHERE table_schema = ? ORDER BY table_name")) {
+                stmt.setString(1, database);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        tables.add(rs.getString(1));
+                    }
+                }
+            }
+            return tables;
+        });
+    }
+}
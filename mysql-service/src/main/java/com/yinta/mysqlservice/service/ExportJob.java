@@ -0,0 +1,28 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.Data;
+
+import java.nio.file.Path;
+
+/// 后台导出任务
+/// 导出结果生成到磁盘文件, 完成后可按查询哈希复用
+@Data
+public class ExportJob {
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private String jobId;
+    private String format;
+    private String filename;
+    private volatile Status status;
+    private volatile String error;
+    private volatile long size;
+    private long createdAt;
+    private volatile long completedAt;
+    private String connectionId;
+    private String serverKey;
+    private String cacheKey;
+    private volatile Path file;
+    private volatile long lastAccessedAt;
+}
@@ -0,0 +1,284 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/// 后台导出任务服务
+/// 在有界线程池中把导出结果生成到磁盘文件, 按 目标服务器 + 数据库 + 格式 + 查询 的哈希复用已完成的文件,
+/// 并按磁盘配额和过期时间清理。任务使用自己的数据库连接, 固定在提交时会话所在的库上。
+@Slf4j
+@Service
+public class ExportJobService {
+    public static final String FORMAT_EXCEL = "excel";
+    public static final String FORMAT_CSV = "csv";
+
+    @Resource
+    private ExportService exportService;
+
+    @Resource
+    private DatabaseService databaseService;
+
+    @Resource
+    private ProgressService progressService;
+
+    @Value("${app.export.job-threads}")
+    private int jobThreads;
+
+    @Value("${app.export.queue-capacity}")
+    private int queueCapacity;
+
+    @Value("${app.export.dir}")
+    private String exportDir;
+
+    @Value("${app.export.quota-bytes}")
+    private long quotaBytes;
+
+    @Value("${app.export.ttl}")
+    private long ttl;
+
+    @Value("${server.port}")
+    private int serverPort;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final Map<String, ExportJob> jobsByCacheKey = new ConcurrentHashMap<>();
+    private Path directory;
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    public void init() throws IOException {
+        // 同一主机上的多个实例各自使用以端口区分的子目录, 启动时只清理自己的文件
+        directory = Paths.get(exportDir, "node-" + serverPort);
+        Files.createDirectories(directory);
+        // 任务状态只保存在内存中, 本实例重启前遗留的文件无法再被引用
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(jobThreads, jobThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), r -> {
+                    Thread thread = new Thread(r, "export-job-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /// 提交导出任务
+    /// 相同目标和查询的任务正在执行或已有未过期的文件时直接返回已有任务
+    ///
+    /// @param connectionId 连接ID
+    /// @param query 查询语句
+    /// @param format excel 或 csv
+    /// @param filename 下载时使用的文件名
+    /// @param refresh 为 true 时不复用已完成的文件
+    /// @return ExportJob 导出任务
+    /// @throws RejectedExecutionException 当任务队列已满时抛出异常
+    public ExportJob submit(String connectionId, String query, String format, String filename, boolean refresh)
+            throws SQLException {
+        String serverKey = databaseService.getServerKey(connectionId);
+        String catalog = databaseService.getCurrentDatabase(connectionId);
+        String cacheKey = hash(serverKey, String.valueOf(catalog), format, query);
+
+        synchronized (this) {
+            ExportJob existing = jobsByCacheKey.get(cacheKey);
+            if (existing != null && isReusable(existing, refresh)) {
+                log.info("Reusing export job {} ({})", existing.getJobId(), existing.getStatus());
+                existing.setLastAccessedAt(System.currentTimeMillis());
+                return existing;
+            }
+
+            ExportJob job = new ExportJob();
+            job.setJobId(UUID.randomUUID().toString());
+            job.setFormat(format);
+            job.setFilename(filename);
+            job.setStatus(ExportJob.Status.QUEUED);
+            job.setConnectionId(connectionId);
+            job.setServerKey(serverKey);
+            job.setCacheKey(cacheKey);
+            job.setCreatedAt(System.currentTimeMillis());
+            job.setLastAccessedAt(job.getCreatedAt());
+
+            // 任务ID同时作为进度订阅的 operationId
+            OperationProgress progress = progressService.start(job.getJobId());
+            progressService.register(connectionId, progress);
+            try {
+                executor.execute(() -> run(job, catalog, query, progress));
+            } catch (RejectedExecutionException e) {
+                progressService.finish(progress, "Export job queue is full");
+                throw e;
+            }
+            jobs.put(job.getJobId(), job);
+            jobsByCacheKey.put(cacheKey, job);
+            log.info("Queued export job {} ({}), queue size: {}", job.getJobId(), format, executor.getQueue().size());
+            return job;
+        }
+    }
+
+    /// 获取导出任务, 只能访问同一目标服务器和用户创建的任务
+    public ExportJob getJob(String connectionId, String jobId) {
+        ExportJob job = jobs.get(jobId);
+        if (job == null || !job.getServerKey().equals(databaseService.getServerKey(connectionId))) {
+            throw new IllegalArgumentException("Export job not found");
+        }
+        job.setLastAccessedAt(System.currentTimeMillis());
+        return job;
+    }
+
+    @Scheduled(fixedDelayString = "${app.export.cleanup-interval}")
+    public void cleanup() {
+        long now = System.currentTimeMillis();
+        for (ExportJob job : jobs.values()) {
+            boolean finished = job.getStatus() == ExportJob.Status.COMPLETED || job.getStatus() == ExportJob.Status.FAILED;
+            if (finished && now - Math.max(job.getCompletedAt(), job.getLastAccessedAt()) > ttl) {
+                log.info("Removing expired export job {}", job.getJobId());
+                remove(job);
+            }
+        }
+    }
+
+    private boolean isReusable(ExportJob job, boolean refresh) {
+        switch (job.getStatus()) {
+            case QUEUED:
+            case RUNNING:
+                return true;
+            case COMPLETED:
+                return !refresh && job.getFile() != null && Files.exists(job.getFile());
+            default:
+                return false;
+        }
+    }
+
+    private void run(ExportJob job, String catalog, String query, OperationProgress progress) {
+        job.setStatus(ExportJob.Status.RUNNING);
+        Path partFile = directory.resolve(job.getJobId() + ".part");
+        try {
+            try (QueryResult data = databaseService.executeDetachedQuery(job.getConnectionId(), catalog, query, progress);
+                 OutputStream out = new BufferedOutputStream(Files.newOutputStream(partFile))) {
+                if (FORMAT_EXCEL.equals(job.getFormat())) {
+                    exportService.exportToExcel(data, out, progress);
+                } else {
+                    exportService.exportToCsv(data, out, progress);
+                }
+            }
+            String extension = FORMAT_EXCEL.equals(job.getFormat()) ? ".xlsx" : ".csv";
+            Path file = Files.move(partFile, directory.resolve(job.getJobId() + extension),
+                    StandardCopyOption.REPLACE_EXISTING);
+            job.setFile(file);
+            job.setSize(Files.size(file));
+            job.setCompletedAt(System.currentTimeMillis());
+            job.setStatus(ExportJob.Status.COMPLETED);
+            log.info("Export job {} completed, {} bytes", job.getJobId(), job.getSize());
+            enforceQuota(job);
+            progressService.finish(progress, job.getError());
+        } catch (Exception e) {
+            log.error("Export job {} failed", job.getJobId(), e);
+            job.setError(e.getMessage());
+            job.setCompletedAt(System.currentTimeMillis());
+            job.setStatus(ExportJob.Status.FAILED);
+            jobsByCacheKey.remove(job.getCacheKey(), job);
+            deleteQuietly(partFile);
+            progressService.finish(progress, e.getMessage());
+        }
+    }
+
+    // 超出磁盘配额时按最近访问时间淘汰已完成的文件
+    private synchronized void enforceQuota(ExportJob latest) {
+        List<ExportJob> completed = new ArrayList<>();
+        long total = 0;
+        for (ExportJob job : jobs.values()) {
+            if (job.getStatus() == ExportJob.Status.COMPLETED && job.getFile() != null) {
+                completed.add(job);
+                total += job.getSize();
+            }
+        }
+        if (total <= quotaBytes) {
+            return;
+        }
+
+        completed.sort(Comparator.comparingLong(ExportJob::getLastAccessedAt));
+        for (ExportJob job : completed) {
+            if (total <= quotaBytes) {
+                break;
+            }
+            if (job == latest) {
+                continue;
+            }
+            log.info("Evicting export job {} to stay within the disk quota", job.getJobId());
+            total -= job.getSize();
+            remove(job);
+        }
+
+        if (total > quotaBytes) {
+            latest.setStatus(ExportJob.Status.FAILED);
+            latest.setError("Export exceeds the disk quota of " + quotaBytes + " bytes");
+            jobsByCacheKey.remove(latest.getCacheKey(), latest);
+            deleteQuietly(latest.getFile());
+            latest.setFile(null);
+        }
+    }
+
+    private void remove(ExportJob job) {
+        jobs.remove(job.getJobId());
+        jobsByCacheKey.remove(job.getCacheKey(), job);
+        if (job.getFile() != null) {
+            deleteQuietly(job.getFile());
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete export file {}: {}", file, e.getMessage());
+        }
+    }
+
+    private static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -8,7 +8,10 @@ import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayOutputStream;
-import java.io.StringWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -21,12 +24,31 @@ public class ExportService {
     private final DatabaseService databaseService;
 
     public byte[] exportToExcel(String connectionId, String query) throws Exception {
-        List<Map<String, Object>> data = databaseService.executeQuery(connectionId, query);
-        if (data.isEmpty()) {
-            throw new IllegalStateException("No data to export");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exportToExcel(connectionId, query, outputStream);
+        return outputStream.toByteArray();
+    }
+
+    public void exportToExcel(String connectionId, String query, OutputStream outputStream) throws Exception {
+        exportToExcel(connectionId, query, outputStream, new OperationProgress(null));
+    }
+
+    /// 导出 Excel 到输出流, 并把已写出的行数和字节数记录到 progress 中
+    public void exportToExcel(String connectionId, String query, OutputStream outputStream,
+                              OperationProgress progress) throws Exception {
+        try (QueryResult data = databaseService.executeQuery(connectionId, query, progress)) {
+            exportToExcel(data, outputStream, progress);
         }
+    }
 
+    /// 把已经取得的结果导出为 Excel, 结果由调用方关闭
+    public void exportToExcel(QueryResult data, OutputStream outputStream, OperationProgress progress) throws Exception {
         try (Workbook workbook = new XSSFWorkbook()) {
+            if (data.isEmpty()) {
+                throw new IllegalStateException("No data to export");
+            }
+            warnIfTruncated(data);
+
             Sheet sheet = workbook.createSheet("Data");
 
             // Create header style
@@ -48,6 +70,7 @@ public class ExportService {
             }
 
             // Create data rows
+            progress.setPhase(OperationProgress.PHASE_SERIALIZE);
             for (int i = 0; i < data.size(); i++) {
                 Row row = sheet.createRow(i + 1);
                 Map<String, Object> rowData = data.get(i);
@@ -58,6 +81,7 @@ public class ExportService {
                         cell.setCellValue(value.toString());
                     }
                 }
+                progress.rowWritten();
             }
 
             // Auto-size columns
@@ -65,25 +89,39 @@ public class ExportService {
                 sheet.autoSizeColumn(i);
             }
 
-            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
-            workbook.write(outputStream);
-            return outputStream.toByteArray();
+            workbook.write(new ProgressOutputStream(outputStream, progress));
         }
     }
 
     public String exportToCsv(String connectionId, String query) throws Exception {
-        List<Map<String, Object>> data = databaseService.executeQuery(connectionId, query);
-        if (data.isEmpty()) {
-            throw new IllegalStateException("No data to export");
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        exportToCsv(connectionId, query, outputStream, new OperationProgress(null));
+        return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /// 以 UTF-8 导出 CSV 到输出流, 并把已写出的行数和字节数记录到 progress 中
+    public void exportToCsv(String connectionId, String query, OutputStream outputStream,
+                            OperationProgress progress) throws Exception {
+        try (QueryResult data = databaseService.executeQuery(connectionId, query, progress)) {
+            exportToCsv(data, outputStream, progress);
         }
+    }
+
+    /// 把已经取得的结果以 UTF-8 导出为 CSV, 结果由调用方关闭
+    public void exportToCsv(QueryResult data, OutputStream outputStream, OperationProgress progress) throws Exception {
+        Writer writer = new OutputStreamWriter(new ProgressOutputStream(outputStream, progress), StandardCharsets.UTF_8);
+        try (CSVWriter csvWriter = new CSVWriter(writer)) {
+            if (data.isEmpty()) {
+                throw new IllegalStateException("No data to export");
+            }
+            warnIfTruncated(data);
 
-        StringWriter stringWriter = new StringWriter();
-        try (CSVWriter csvWriter = new CSVWriter(stringWriter)) {
             // Write headers
             List<String> columns = new ArrayList<>(data.get(0).keySet());
             csvWriter.writeNext(columns.toArray(new String[0]));
 
             // Write data
+            progress.setPhase(OperationProgress.PHASE_SERIALIZE);
             for (Map<String, Object> row : data) {
                 String[] rowData = new String[columns.size()];
                 for (int i = 0; i < columns.size(); i++) {
@@ -91,9 +129,14 @@ public class ExportService {
                     rowData[i] = value != null ? value.toString() : "";
                 }
                 csvWriter.writeNext(rowData);
+                progress.rowWritten();
             }
         }
+    }
 
-        return stringWriter.toString();
+    private void warnIfTruncated(QueryResult data) {
+        if (data.isTruncated()) {
+            log.warn("Exporting truncated result ({} rows): {}", data.size(), data.getTruncatedReason());
+        }
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,61 @@
+package com.yinta.mysqlservice.service;
+
+import com.yinta.mysqlservice.config.DatabaseConfig;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Service
+public class InMemorySessionStore implements SessionStore {
+    private final Map<String, DatabaseConfig> sessions = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+    // 已断开的连接ID -> 撤销截止时间
+    private final Map<String, Long> revocations = new ConcurrentHashMap<>();
+
+    @Override
+    public void save(String connectionId, DatabaseConfig config) {
+        sessions.put(connectionId, config);
+    }
+
+    @Override
+    public DatabaseConfig find(String connectionId) {
+        return sessions.get(connectionId);
+    }
+
+    @Override
+    public void remove(String connectionId) {
+        sessions.remove(connectionId);
+        lastWrites.remove(connectionId);
+    }
+
+    @Override
+    public void recordWrite(String connectionId, long time) {
+        lastWrites.put(connectionId, time);
+    }
+
+    @Override
+    public Long findLastWrite(String connectionId) {
+        return lastWrites.get(connectionId);
+    }
+
+    @Override
+    public void revoke(String connectionId, long until) {
+        long now = System.currentTimeMillis();
+        revocations.values().removeIf(expiresAt -> expiresAt <= now);
+        revocations.put(connectionId, until);
+    }
+
+    @Override
+    public boolean isRevoked(String connectionId) {
+        Long until = revocations.get(connectionId);
+        if (until == null) {
+            return false;
+        }
+        if (until <= System.currentTimeMillis()) {
+            revocations.remove(connectionId, until);
+            return false;
+        }
+        return true;
+    }
+}
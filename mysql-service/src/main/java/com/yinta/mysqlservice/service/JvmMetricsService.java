@@ -0,0 +1,109 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryUsage;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// JVM 内存分配和 GC 指标
+/// 新对象都在 Eden 区分配, 每次 GC 前后 Eden 的占用之差即为两次 GC 之间的分配量,
+/// 加上当前 Eden 的占用得到自启动以来的近似分配总量; 压测工具在一轮前后各取一次, 计算分配速率。
+@Slf4j
+@Service
+public class JvmMetricsService {
+    // 回收前的 Eden 占用减去回收后的占用, 按 GC 事件累加
+    private final AtomicLong collectedEdenBytes = new AtomicLong();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = this::onGc;
+
+    @PostConstruct
+    public void init() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                NotificationEmitter emitter = (NotificationEmitter) gc;
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException e) {
+                log.debug("GC listener already removed", e);
+            }
+        }
+    }
+
+    /// 近似分配总量, GC 次数和耗时, 堆占用
+    public Map<String, Object> getMetrics() {
+        long gcCount = 0;
+        long gcTimeMs = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(gc.getCollectionCount(), 0);
+            gcTimeMs += Math.max(gc.getCollectionTime(), 0);
+        }
+        long edenUsed = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (isEden(pool.getName())) {
+                edenUsed += pool.getUsage().getUsed();
+            }
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("allocatedBytes", collectedEdenBytes.get() + edenUsed);
+        metrics.put("gcCount", gcCount);
+        metrics.put("gcTimeMs", gcTimeMs);
+        metrics.put("heapUsedBytes", ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed());
+        metrics.put("uptimeMs", ManagementFactory.getRuntimeMXBean().getUptime());
+        return metrics;
+    }
+
+    // 通知内容是 com.sun.management.GarbageCollectionNotificationInfo, 按 CompositeData 读取以免依赖 com.sun 包
+    private void onGc(Notification notification, Object handback) {
+        if (!"com.sun.management.gc.notification".equals(notification.getType())
+                || !(notification.getUserData() instanceof CompositeData)) {
+            return;
+        }
+        CompositeData gcInfo = (CompositeData) ((CompositeData) notification.getUserData()).get("gcInfo");
+        Map<String, MemoryUsage> before = usages(gcInfo, "memoryUsageBeforeGc");
+        Map<String, MemoryUsage> after = usages(gcInfo, "memoryUsageAfterGc");
+        for (Map.Entry<String, MemoryUsage> pool : before.entrySet()) {
+            if (isEden(pool.getKey()) && after.containsKey(pool.getKey())) {
+                long collected = pool.getValue().getUsed() - after.get(pool.getKey()).getUsed();
+                if (collected > 0) {
+                    collectedEdenBytes.addAndGet(collected);
+                }
+            }
+        }
+    }
+
+    private static Map<String, MemoryUsage> usages(CompositeData gcInfo, String key) {
+        Map<String, MemoryUsage> usages = new HashMap<>();
+        for (Object row : ((TabularData) gcInfo.get(key)).values()) {
+            CompositeData entry = (CompositeData) row;
+            usages.put((String) entry.get("key"), MemoryUsage.from((CompositeData) entry.get("value")));
+        }
+        return usages;
+    }
+
+    private static boolean isEden(String poolName) {
+        return poolName.contains("Eden");
+    }
+}
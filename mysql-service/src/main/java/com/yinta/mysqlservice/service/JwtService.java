@@ -1,39 +1,88 @@
 package com.yinta.mysqlservice.service;
 
+import com.yinta.mysqlservice.config.DatabaseConfig;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
+/// 令牌签发和校验
+/// 签名密钥由 app.session.secret 派生; 令牌中的连接描述与令牌的连接ID和过期时间绑定,
+/// 复制到其他令牌中无法解密, 因此不能绕过断开连接时的撤销和令牌的有效期。
 @Service
 public class JwtService {
-    private static final String SECRET_KEY = "yintaTmsFlutterSecretKeyForJwtTokenGenerationAndValidation2024";
     private static final long EXPIRATION_TIME = 24 * 60 * 60 * 1000; // 24 hours
+    private static final String DESCRIPTOR_CLAIM = "descriptor";
+
+    @Resource
+    private ConnectionDescriptorCodec connectionDescriptorCodec;
+
+    @Resource
+    private SessionStore sessionStore;
 
     public String generateToken(String connectionId) {
+        return generateToken(connectionId, null);
+    }
+
+    /// 生成令牌, 并携带加密后的连接描述, 使任意服务节点都能在重启或切换节点后重新打开连接
+    public String generateToken(String connectionId, DatabaseConfig config) {
+        long now = System.currentTimeMillis();
+        // 令牌中的过期时间精确到秒
+        Date expiration = new Date((now + EXPIRATION_TIME) / 1000 * 1000);
         Map<String, Object> claims = new HashMap<>();
         claims.put("connectionId", connectionId);
+        if (config != null) {
+            claims.put(DESCRIPTOR_CLAIM, connectionDescriptorCodec.encrypt(config,
+                    descriptorBinding(connectionId, expiration)));
+        }
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(connectionId)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + EXPIRATION_TIME))
-                .signWith(SignatureAlgorithm.HS256, SECRET_KEY.getBytes())
+                .setIssuedAt(new Date(now))
+                .setExpiration(expiration)
+                .signWith(SignatureAlgorithm.HS256, connectionDescriptorCodec.getSigningKey())
                 .compact();
     }
 
+    /// 从令牌中取出连接ID
+    /// 当前节点的会话存储中没有该连接时, 用令牌中的连接描述补全, 连接本身在首次使用时才打开
+    ///
+    /// @throws IllegalStateException 当令牌没有过期时间, 连接已断开或连接描述与令牌不符时抛出异常
     public String getConnectionIdFromToken(String token) {
         Claims claims = extractAllClaims(token);
-        return claims.get("connectionId", String.class);
+        String connectionId = claims.get("connectionId", String.class);
+        if (connectionId == null || claims.getExpiration() == null) {
+            throw new IllegalStateException("Invalid token");
+        }
+        if (sessionStore.isRevoked(connectionId)) {
+            throw new IllegalStateException("Connection has been closed");
+        }
+        String descriptor = claims.get(DESCRIPTOR_CLAIM, String.class);
+        if (descriptor != null && sessionStore.find(connectionId) == null) {
+            sessionStore.save(connectionId, connectionDescriptorCodec.decrypt(descriptor,
+                    descriptorBinding(connectionId, claims.getExpiration())));
+        }
+        return connectionId;
+    }
+
+    /// 撤销连接ID, 此前签发的所有令牌在过期前都不能再使用
+    public void revoke(String connectionId) {
+        sessionStore.revoke(connectionId, System.currentTimeMillis() + EXPIRATION_TIME);
+    }
+
+    // 连接描述的关联数据: 连接ID和过期时间(秒)
+    private static String descriptorBinding(String connectionId, Date expiration) {
+        return connectionId + "\n" + expiration.getTime() / 1000;
     }
 
     private Claims extractAllClaims(String token) {
         return Jwts.parser()
-                .setSigningKey(SECRET_KEY.getBytes())
+                .setSigningKey(connectionDescriptorCodec.getSigningKey())
                 .parseClaimsJws(token)
                 .getBody();
     }
@@ -0,0 +1,82 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// 长时间运行的查询或导出的进度计数
+/// 由执行线程更新, 由 SSE 推送线程读取
+public class OperationProgress {
+    public static final String PHASE_QUEUED = "queued";
+    public static final String PHASE_EXECUTE = "execute";
+    public static final String PHASE_FETCH = "fetch";
+    public static final String PHASE_SERIALIZE = "serialize";
+    public static final String PHASE_COMPLETED = "completed";
+    public static final String PHASE_FAILED = "failed";
+
+    @Getter
+    private final String operationId;
+    // 登记到 ProgressService 时的键(连接ID + operationId), 未登记时为 null
+    @Getter
+    @Setter
+    private volatile String key;
+    private final long startedAt = System.currentTimeMillis();
+    private final AtomicLong rowsFetched = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    @Getter
+    private volatile String phase = PHASE_QUEUED;
+    private volatile long finishedAt;
+
+    public OperationProgress(String operationId) {
+        this.operationId = operationId;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public void rowFetched() {
+        rowsFetched.lazySet(rowsFetched.get() + 1);
+    }
+
+    public void rowWritten() {
+        rowsWritten.lazySet(rowsWritten.get() + 1);
+    }
+
+    public void addRowsWritten(long rows) {
+        rowsWritten.addAndGet(rows);
+    }
+
+    public void addBytesWritten(long bytes) {
+        bytesWritten.addAndGet(bytes);
+    }
+
+    public void finish(String error) {
+        this.finishedAt = System.currentTimeMillis();
+        this.phase = error == null ? PHASE_COMPLETED : PHASE_FAILED;
+    }
+
+    public boolean isFinished() {
+        return finishedAt > 0;
+    }
+
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("operationId", operationId);
+        snapshot.put("phase", phase);
+        snapshot.put("rowsFetched", rowsFetched.get());
+        snapshot.put("rowsWritten", rowsWritten.get());
+        snapshot.put("bytesWritten", bytesWritten.get());
+        snapshot.put("elapsedMs", (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt);
+        // 错误详情可能包含 SQL 和库表信息, 只通过发起操作的请求本身返回, 这里只给出 failed 阶段
+        return snapshot;
+    }
+}
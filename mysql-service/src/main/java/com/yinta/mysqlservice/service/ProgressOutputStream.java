@@ -0,0 +1,34 @@
+package com.yinta.mysqlservice.service;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/// 统计写出的字节数, 并记录到操作进度中
+public class ProgressOutputStream extends FilterOutputStream {
+    private final OperationProgress progress;
+    private long count;
+
+    public ProgressOutputStream(OutputStream out, OperationProgress progress) {
+        super(out);
+        this.progress = progress;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        count++;
+        progress.addBytesWritten(1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        count += len;
+        progress.addBytesWritten(len);
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,177 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/// 查询和导出进度服务
+/// 以 连接ID + operationId 登记正在执行的操作, 只有同一连接的令牌可以订阅; 通过 SSE 定时推送进度快照
+@Slf4j
+@Service
+public class ProgressService {
+    private static final long PUSH_INTERVAL_MS = 250;
+    // 订阅时操作可能尚未开始, 最多等待这么久
+    private static final long WAIT_FOR_START_MS = 30_000;
+    // 操作结束后保留进度, 便于晚到的订阅者拿到最终状态
+    private static final long RETAIN_FINISHED_MS = 60_000;
+    private static final long EMITTER_TIMEOUT_MS = 30 * 60 * 1000;
+    // 一次推送超过该时间仍未写完的订阅者视为过慢, 不再推送并关闭
+    private static final long SEND_TIMEOUT_MS = 5_000;
+    private static final int SEND_THREADS = 16;
+    // 等待写出的推送上限, 每个订阅者同时最多排入一个推送
+    private static final int SEND_QUEUE_CAPACITY = 1024;
+
+    private final Map<String, OperationProgress> operations = new ConcurrentHashMap<>();
+    // 只负责定时触发, 不执行可能阻塞的写出
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "progress-push");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // 写出 SSE 事件, 线程数和队列都有上限; 每个订阅者同时最多有一个推送在途, 慢的订阅者不会拖慢其他订阅者。
+    // 队列已满时放弃本次推送, 下一次触发时推送最新的快照
+    private final ThreadPoolExecutor sender = new ThreadPoolExecutor(SEND_THREADS, SEND_THREADS,
+            60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(SEND_QUEUE_CAPACITY), new ThreadFactory() {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "progress-send-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }, new ThreadPoolExecutor.AbortPolicy());
+
+    public ProgressService() {
+        sender.allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        sender.shutdownNow();
+    }
+
+    /// 创建进度对象, 登记前不会被订阅到
+    ///
+    /// @param operationId 客户端提供的操作ID, 可以为空
+    public OperationProgress start(String operationId) {
+        return new OperationProgress(operationId);
+    }
+
+    /// 把操作登记到连接下, operationId 为空时不登记
+    ///
+    /// @throws IllegalArgumentException 当该连接下同一 operationId 的操作仍在执行时抛出异常
+    public void register(String connectionId, OperationProgress progress) {
+        String operationId = progress.getOperationId();
+        if (operationId == null || operationId.isEmpty()) {
+            return;
+        }
+        String key = key(connectionId, operationId);
+        OperationProgress existing = operations.putIfAbsent(key, progress);
+        if (existing != null && !(existing.isFinished() && operations.replace(key, existing, progress))) {
+            throw new IllegalArgumentException("Operation " + operationId + " is already running");
+        }
+        progress.setKey(key);
+    }
+
+    public void finish(OperationProgress progress, String error) {
+        progress.finish(error);
+        String key = progress.getKey();
+        if (key != null) {
+            scheduler.schedule(() -> operations.remove(key, progress), RETAIN_FINISHED_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /// 订阅操作进度, 每 250ms 推送一次 progress 事件, 操作结束后推送最终状态并关闭
+    ///
+    /// @param connectionId 订阅者的连接ID, 只能订阅同一连接下登记的操作
+    public SseEmitter subscribe(String connectionId, String operationId) {
+        String key = key(connectionId, operationId);
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MS);
+        long subscribedAt = System.currentTimeMillis();
+        AtomicReference<ScheduledFuture<?>> task = new AtomicReference<>();
+        AtomicBoolean done = new AtomicBoolean();
+        // 正在写出的推送开始的时间, 0 表示没有在途的推送
+        AtomicLong sendingSince = new AtomicLong();
+        Runnable cancel = () -> {
+            done.set(true);
+            ScheduledFuture<?> future = task.get();
+            if (future != null) {
+                future.cancel(false);
+            }
+        };
+
+        Runnable push = () -> {
+            try {
+                OperationProgress progress = operations.get(key);
+                if (progress == null) {
+                    if (System.currentTimeMillis() - subscribedAt > WAIT_FOR_START_MS) {
+                        emitter.send(SseEmitter.event().name("error").data("Operation not found"));
+                        emitter.complete();
+                        cancel.run();
+                    }
+                    return;
+                }
+                boolean finished = progress.isFinished();
+                emitter.send(SseEmitter.event().name("progress").data(progress.snapshot()));
+                if (finished) {
+                    emitter.complete();
+                    cancel.run();
+                }
+            } catch (Exception e) {
+                log.debug("Progress subscriber for {} went away: {}", operationId, e.getMessage());
+                emitter.completeWithError(e);
+                cancel.run();
+            } finally {
+                sendingSince.set(0);
+            }
+        };
+
+        Runnable tick = () -> {
+            if (done.get()) {
+                cancel.run();
+                return;
+            }
+            long since = sendingSince.get();
+            if (since == 0) {
+                sendingSince.set(System.currentTimeMillis());
+                try {
+                    sender.execute(push);
+                } catch (RejectedExecutionException e) {
+                    // 写出队列已满, 跳过本次推送
+                    sendingSince.set(0);
+                }
+            } else if (System.currentTimeMillis() - since > SEND_TIMEOUT_MS) {
+                // 上一次推送仍阻塞在写出上, 放弃该订阅者; 关闭同样可能阻塞, 交给写出线程
+                try {
+                    sender.execute(() -> emitter.completeWithError(new IOException("Progress send timed out")));
+                } catch (RejectedExecutionException e) {
+                    // 写出队列已满, 下一次触发时再关闭
+                    return;
+                }
+                log.debug("Progress subscriber for {} is too slow, closing", operationId);
+                cancel.run();
+            }
+        };
+
+        emitter.onCompletion(cancel);
+        emitter.onTimeout(cancel);
+        emitter.onError(e -> cancel.run());
+        task.set(scheduler.scheduleAtFixedRate(tick, 0, PUSH_INTERVAL_MS, TimeUnit.MILLISECONDS));
+        return emitter;
+    }
+
+    private static String key(String connectionId, String operationId) {
+        return connectionId + "/" + operationId;
+    }
+}
@@ -0,0 +1,42 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/// 打开中的查询游标
+/// 持有语句和结果集, 关闭时一并释放, 并归还所使用的只读副本
+@Slf4j
+public class QueryCursor implements Closeable {
+    private final Statement statement;
+    @Getter
+    private final ResultSet resultSet;
+    private final Runnable release;
+    private boolean closed;
+
+    QueryCursor(Statement statement, ResultSet resultSet, Runnable release) {
+        this.statement = statement;
+        this.resultSet = resultSet;
+        this.release = release;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            resultSet.close();
+            statement.close();
+        } catch (SQLException e) {
+            log.warn("Error closing query cursor: {}", e.getMessage());
+        } finally {
+            release.run();
+        }
+    }
+}
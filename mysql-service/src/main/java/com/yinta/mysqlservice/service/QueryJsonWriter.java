@@ -0,0 +1,316 @@
+package com.yinta.mysqlservice.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.text.DateFormat;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+
+/// 查询结果的直接 JSON 序列化
+/// 从 ResultSet 逐个单元格读取, 按列类型直接写入 JsonGenerator, 不经过行 Map 和对象图反射。
+/// 输出与 /api/query 原有响应相同: {"results": [...], "truncated": ..., "truncatedReason": ...},
+/// 第一行带有 __columnOrder, 各类型的写法与 ObjectMapper 的默认序列化保持一致。
+@Slf4j
+@Service
+public class QueryJsonWriter {
+    private static final SerializableString RESULTS = new SerializedString("results");
+    private static final SerializableString COLUMN_ORDER = new SerializedString("__columnOrder");
+
+    // 列的读取方式, 无法确定与 getObject 结果一致时一律按对象处理
+    private static final int KIND_OBJECT = 0;
+    private static final int KIND_STRING = 1;
+    private static final int KIND_INT = 2;
+    private static final int KIND_LONG = 3;
+    private static final int KIND_FLOAT = 4;
+    private static final int KIND_DOUBLE = 5;
+    private static final int KIND_DECIMAL = 6;
+    private static final int KIND_BYTES = 7;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private ResultMemoryBudget resultMemoryBudget;
+
+    // 少见类型的兜底序列化, 不在每个值之后刷新输出
+    private ObjectWriter fallbackWriter;
+
+    @PostConstruct
+    public void init() {
+        fallbackWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /// 把游标中的结果写到输出流
+    /// 不主动刷新输出流, 结果较小时仍留在响应缓冲区中, 调用方可以在失败时丢弃并改为返回错误;
+    /// 响应已经提交后无法再改变状态码, 读取中途失败时结束 JSON, 在 truncatedReason 和 error 中说明
+    ///
+    /// @return String 读取中途失败时返回错误信息, 否则返回 null
+    public String write(QueryCursor cursor, OutputStream outputStream, OperationProgress progress) throws IOException {
+        ProgressOutputStream out = new ProgressOutputStream(outputStream, progress);
+        String error = null;
+        try (JsonGenerator gen = objectMapper.createGenerator(out, JsonEncoding.UTF8)) {
+            // 输出流由调用方负责关闭和刷新
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            ResultSet rs = cursor.getResultSet();
+            String truncatedReason = null;
+            long rows = 0;
+
+            gen.writeStartObject();
+            gen.writeFieldName(RESULTS);
+            gen.writeStartArray();
+            try {
+                Columns columns = new Columns(rs.getMetaData());
+                ValueWriter values = new ValueWriter(gen);
+                long maxRows = resultMemoryBudget.getMaxRows();
+                long maxBytes = resultMemoryBudget.getMaxBytes();
+                progress.setPhase(OperationProgress.PHASE_FETCH);
+                while (rs.next()) {
+                    if (rows >= maxRows) {
+                        truncatedReason = "Result exceeds the row limit of " + maxRows;
+                        break;
+                    }
+                    if (out.getCount() + gen.getOutputBuffered() > maxBytes) {
+                        truncatedReason = "Result exceeds the size limit of " + maxBytes + " bytes";
+                        break;
+                    }
+
+                    gen.writeStartObject();
+                    for (int i = 0; i < columns.fields.length; i++) {
+                        gen.writeFieldName(columns.fields[i]);
+                        int column = columns.indexes[i];
+                        values.write(rs, column, columns.kinds[column - 1]);
+                    }
+                    if (rows == 0) {
+                        gen.writeFieldName(COLUMN_ORDER);
+                        gen.writeStartArray();
+                        for (String name : columns.order) {
+                            gen.writeString(name);
+                        }
+                        gen.writeEndArray();
+                    }
+                    gen.writeEndObject();
+                    rows++;
+                    progress.rowFetched();
+                    progress.rowWritten();
+                }
+            } catch (SQLException e) {
+                log.error("Error reading query result after {} rows: {}", rows, e.getMessage());
+                error = e.getMessage();
+                truncatedReason = "Query failed after " + rows + " rows: " + e.getMessage();
+            }
+            gen.writeEndArray();
+
+            gen.writeBooleanField("truncated", truncatedReason != null);
+            if (truncatedReason != null) {
+                log.warn("Query result truncated at {} rows: {}", rows, truncatedReason);
+                gen.writeStringField("truncatedReason", truncatedReason);
+            }
+            if (error != null) {
+                gen.writeStringField("error", error);
+            }
+            gen.writeEndObject();
+            log.info("Query result streamed, {} rows, {} bytes", rows, out.getCount() + gen.getOutputBuffered());
+        }
+        return error;
+    }
+
+    // 列名和读取方式, 每个查询只计算一次
+    private static class Columns {
+        final List<String> order = new ArrayList<>();
+        // 重名列只写一次, 取第一列的值, 与原有实现按列名调用 getObject 的结果一致
+        final SerializableString[] fields;
+        final int[] indexes;
+        final int[] kinds;
+
+        Columns(ResultSetMetaData metaData) throws SQLException {
+            int columnCount = metaData.getColumnCount();
+            kinds = new int[columnCount];
+            Map<String, Integer> firstIndex = new LinkedHashMap<>();
+            for (int i = 1; i <= columnCount; i++) {
+                String name = metaData.getColumnName(i);
+                order.add(name);
+                firstIndex.putIfAbsent(name, i);
+                kinds[i - 1] = kindOf(metaData, i);
+            }
+            fields = new SerializableString[firstIndex.size()];
+            indexes = new int[firstIndex.size()];
+            int n = 0;
+            for (Map.Entry<String, Integer> column : firstIndex.entrySet()) {
+                fields[n] = new SerializedString(column.getKey());
+                indexes[n] = column.getValue();
+                n++;
+            }
+        }
+
+        // 无符号整数, BIT 和日期时间的 getObject 类型随驱动版本和设置变化, 按对象读取
+        private static int kindOf(ResultSetMetaData metaData, int column) throws SQLException {
+            boolean signed = metaData.isSigned(column);
+            switch (metaData.getColumnType(column)) {
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGNVARCHAR:
+                    return KIND_STRING;
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return signed ? KIND_INT : KIND_OBJECT;
+                case Types.BIGINT:
+                    return signed ? KIND_LONG : KIND_OBJECT;
+                case Types.REAL:
+                    return KIND_FLOAT;
+                case Types.DOUBLE:
+                    return KIND_DOUBLE;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return KIND_DECIMAL;
+                case Types.BINARY:
+                case Types.VARBINARY:
+                case Types.LONGVARBINARY:
+                case Types.BLOB:
+                    return KIND_BYTES;
+                default:
+                    return KIND_OBJECT;
+            }
+        }
+    }
+
+    private class ValueWriter {
+        private final JsonGenerator gen;
+        private final boolean datesAsTimestamps = objectMapper.isEnabled(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        // DateFormat 不是线程安全的, 每个查询使用自己的副本
+        private final DateFormat dateFormat = (DateFormat) objectMapper.getSerializationConfig().getDateFormat().clone();
+
+        ValueWriter(JsonGenerator gen) {
+            this.gen = gen;
+        }
+
+        void write(ResultSet rs, int column, int kind) throws SQLException, IOException {
+            switch (kind) {
+                case KIND_STRING:
+                    writeString(rs.getString(column));
+                    return;
+                case KIND_INT: {
+                    int value = rs.getInt(column);
+                    if (rs.wasNull()) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeNumber(value);
+                    }
+                    return;
+                }
+                case KIND_LONG: {
+                    long value = rs.getLong(column);
+                    if (rs.wasNull()) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeNumber(value);
+                    }
+                    return;
+                }
+                case KIND_FLOAT: {
+                    float value = rs.getFloat(column);
+                    if (rs.wasNull()) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeNumber(value);
+                    }
+                    return;
+                }
+                case KIND_DOUBLE: {
+                    double value = rs.getDouble(column);
+                    if (rs.wasNull()) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeNumber(value);
+                    }
+                    return;
+                }
+                case KIND_DECIMAL: {
+                    BigDecimal value = rs.getBigDecimal(column);
+                    if (value == null) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeNumber(value);
+                    }
+                    return;
+                }
+                case KIND_BYTES: {
+                    byte[] value = rs.getBytes(column);
+                    if (value == null) {
+                        gen.writeNull();
+                    } else {
+                        gen.writeBinary(value);
+                    }
+                    return;
+                }
+                default:
+                    writeObject(rs.getObject(column));
+            }
+        }
+
+        private void writeString(String value) throws IOException {
+            if (value == null) {
+                gen.writeNull();
+            } else {
+                gen.writeString(value);
+            }
+        }
+
+        private void writeObject(Object value) throws IOException {
+            if (value == null) {
+                gen.writeNull();
+            } else if (value instanceof String) {
+                gen.writeString((String) value);
+            } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                gen.writeNumber(((Number) value).intValue());
+            } else if (value instanceof Long) {
+                gen.writeNumber((Long) value);
+            } else if (value instanceof BigInteger) {
+                gen.writeNumber((BigInteger) value);
+            } else if (value instanceof BigDecimal) {
+                gen.writeNumber((BigDecimal) value);
+            } else if (value instanceof Boolean) {
+                gen.writeBoolean((Boolean) value);
+            } else if (value instanceof byte[]) {
+                gen.writeBinary((byte[]) value);
+            } else if (value instanceof java.sql.Timestamp && !datesAsTimestamps) {
+                // 与 ObjectMapper 的 java.util.Date 序列化相同, 使用其配置的日期格式和时区
+                gen.writeString(dateFormat.format((Date) value));
+            } else if (value instanceof LocalDateTime && !datesAsTimestamps) {
+                gen.writeString(DateTimeFormatter.ISO_LOCAL_DATE_TIME.format((LocalDateTime) value));
+            } else if (value instanceof LocalDate && !datesAsTimestamps) {
+                gen.writeString(DateTimeFormatter.ISO_LOCAL_DATE.format((LocalDate) value));
+            } else if (value instanceof LocalTime && !datesAsTimestamps) {
+                gen.writeString(DateTimeFormatter.ISO_LOCAL_TIME.format((LocalTime) value));
+            } else {
+                // 其余类型(java.sql.Date, Time 等)交给 ObjectMapper, 保证输出一致
+                fallbackWriter.writeValue(gen, value);
+            }
+        }
+    }
+}
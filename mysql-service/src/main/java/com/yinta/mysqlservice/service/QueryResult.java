@@ -0,0 +1,420 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.*;
+
+/// 查询结果集
+/// 前面的行保存在堆内, 超出内存预算后的行以紧凑的二进制格式写入临时文件,
+/// 序列化时通过内存映射读回。达到行数或字节上限时停止追加并标记为截断。
+/// 使用完毕后必须调用 close() 释放内存预算并删除临时文件。
+@Slf4j
+public class QueryResult extends AbstractList<Map<String, Object>> implements Closeable {
+    // 向全局预算申请内存的粒度, 减少竞争
+    private static final long RESERVE_CHUNK_BYTES = 1024 * 1024;
+    // 单个内存映射最多覆盖 2GB
+    private static final long MAX_SPILL_BYTES = Integer.MAX_VALUE;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INT = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_DOUBLE = 4;
+    private static final byte TYPE_FLOAT = 5;
+    private static final byte TYPE_DECIMAL = 6;
+    private static final byte TYPE_BIG_INTEGER = 7;
+    private static final byte TYPE_BOOLEAN = 8;
+    private static final byte TYPE_BYTES = 9;
+    private static final byte TYPE_TIMESTAMP = 10;
+    private static final byte TYPE_DATE = 11;
+    private static final byte TYPE_TIME = 12;
+    private static final byte TYPE_LOCAL_DATE_TIME = 13;
+    private static final byte TYPE_LOCAL_DATE = 14;
+    private static final byte TYPE_LOCAL_TIME = 15;
+
+    private final List<String> columns;
+    // 与前面的列重名的列, 行中只保留第一列的值, 与按列名调用 getObject 的结果一致
+    private final boolean[] shadowed;
+    private final ResultMemoryBudget budget;
+    private final List<Map<String, Object>> memoryRows = new ArrayList<>();
+
+    private long memoryBytes;
+    private long reservedBytes;
+    private long totalBytes;
+
+    @Getter
+    private boolean truncated;
+    @Getter
+    private String truncatedReason;
+
+    private Path spillFile;
+    private DataOutputStream spillOut;
+    private long spillPosition;
+    // 最后一个完整写入的行的结束位置
+    private long spillEnd;
+    private long[] spillOffsets = new long[0];
+    private int spillCount;
+    private MappedByteBuffer spillBuffer;
+
+    public QueryResult(List<String> columns, ResultMemoryBudget budget) {
+        this.columns = columns;
+        this.shadowed = new boolean[columns.size()];
+        Set<String> seen = new HashSet<>();
+        for (int i = 0; i < shadowed.length; i++) {
+            shadowed[i] = !seen.add(columns.get(i));
+        }
+        this.budget = budget;
+    }
+
+    /// 包装已在内存中的结果(如更新语句的影响行数), 不占用内存预算
+    public static QueryResult of(List<Map<String, Object>> rows) {
+        QueryResult result = new QueryResult(Collections.<String>emptyList(), null);
+        result.memoryRows.addAll(rows);
+        return result;
+    }
+
+    /// 追加一行
+    ///
+    /// @param values 按列顺序排列的值, 调用方可复用该数组
+    /// @return boolean 达到行数或字节上限时返回 false, 调用方应停止读取
+    public boolean append(Object[] values) throws IOException {
+        if (size() >= budget.getMaxRows()) {
+            truncate("Result exceeds the row limit of " + budget.getMaxRows());
+            return false;
+        }
+
+        long rowBytes = estimateRowBytes(values);
+        if (totalBytes + rowBytes > budget.getMaxBytes()) {
+            truncate("Result exceeds the size limit of " + budget.getMaxBytes() + " bytes");
+            return false;
+        }
+
+        // 第一行总是保留在内存中, 列顺序等元数据挂在第一行上
+        if (spillOut == null && (memoryRows.isEmpty() || reserveMemory(rowBytes))) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < values.length; i++) {
+                if (!shadowed[i]) {
+                    row.put(columns.get(i), values[i]);
+                }
+            }
+            memoryRows.add(row);
+            memoryBytes += rowBytes;
+        } else {
+            if (!spill(values)) {
+                truncate("Result exceeds the spill file limit of " + MAX_SPILL_BYTES + " bytes");
+                return false;
+            }
+        }
+        totalBytes += rowBytes;
+        return true;
+    }
+
+    /// 结束追加, 把溢出文件映射到内存以供读取
+    public void finish() throws IOException {
+        if (spillOut == null) {
+            return;
+        }
+        spillOut.close();
+        if (spillEnd > 0) {
+            try (FileChannel channel = FileChannel.open(spillFile, StandardOpenOption.READ)) {
+                spillBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, spillEnd);
+            }
+        }
+        log.info("Query result spilled {} of {} rows ({} bytes) to {}",
+                spillCount, size(), spillEnd, spillFile);
+    }
+
+    @Override
+    public Map<String, Object> get(int index) {
+        if (index < memoryRows.size()) {
+            return memoryRows.get(index);
+        }
+        int spillIndex = index - memoryRows.size();
+        if (spillIndex >= spillCount) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+        }
+        if (spillBuffer == null) {
+            throw new IllegalStateException("Query result has not been finished");
+        }
+        ByteBuffer buffer = spillBuffer.duplicate();
+        buffer.position((int) spillOffsets[spillIndex]);
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < shadowed.length; i++) {
+            if (!shadowed[i]) {
+                row.put(columns.get(i), readValue(buffer));
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public int size() {
+        return memoryRows.size() + spillCount;
+    }
+
+    public boolean isSpilled() {
+        return spillCount > 0;
+    }
+
+    @Override
+    public void close() {
+        if (budget != null) {
+            budget.release(reservedBytes);
+        }
+        reservedBytes = 0;
+        if (spillBuffer != null) {
+            unmap(spillBuffer);
+            spillBuffer = null;
+        }
+        if (spillFile != null) {
+            try {
+                if (spillOut != null) {
+                    spillOut.close();
+                }
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                log.warn("Failed to delete spill file {}: {}", spillFile, e.getMessage());
+                spillFile.toFile().deleteOnExit();
+            }
+            spillFile = null;
+        }
+    }
+
+    // 立即解除文件映射, 不等 GC 回收 MappedByteBuffer; 调用方保证 close() 与读取不会并发
+    private static void unmap(MappedByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                // Java 8 没有 Unsafe.invokeCleaner, 直接调用 DirectByteBuffer 的 Cleaner
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+                return;
+            }
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            invokeCleaner.invoke(theUnsafe.get(null), buffer);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Failed to unmap spill file, leaving it to GC: {}", e.getMessage());
+        }
+    }
+
+    private void truncate(String reason) {
+        truncated = true;
+        truncatedReason = reason;
+        log.warn("Query result truncated at {} rows: {}", size(), reason);
+    }
+
+    private boolean reserveMemory(long rowBytes) {
+        if (memoryBytes + rowBytes > budget.getMemoryThresholdBytes()) {
+            return false;
+        }
+        while (memoryBytes + rowBytes > reservedBytes) {
+            long chunk = Math.max(RESERVE_CHUNK_BYTES, rowBytes);
+            if (!budget.tryReserve(chunk)) {
+                return false;
+            }
+            reservedBytes += chunk;
+        }
+        return true;
+    }
+
+    private boolean spill(Object[] values) throws IOException {
+        if (spillOut == null) {
+            spillFile = budget.createSpillFile();
+            spillOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile), 64 * 1024));
+        }
+        long start = spillPosition;
+        if (start >= MAX_SPILL_BYTES) {
+            return false;
+        }
+        for (int i = 0; i < values.length; i++) {
+            if (!shadowed[i]) {
+                writeValue(values[i]);
+            }
+        }
+        if (spillPosition > MAX_SPILL_BYTES) {
+            return false;
+        }
+        if (spillCount == spillOffsets.length) {
+            spillOffsets = Arrays.copyOf(spillOffsets, Math.max(1024, spillCount * 2));
+        }
+        spillOffsets[spillCount++] = start;
+        spillEnd = spillPosition;
+        return true;
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            writeType(TYPE_NULL);
+        } else if (value instanceof String) {
+            writeType(TYPE_STRING);
+            writeBytes(((String) value).getBytes(StandardCharsets.UTF_8));
+        } else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            writeType(TYPE_INT);
+            spillOut.writeInt(((Number) value).intValue());
+            spillPosition += 4;
+        } else if (value instanceof Long) {
+            writeType(TYPE_LONG);
+            spillOut.writeLong((Long) value);
+            spillPosition += 8;
+        } else if (value instanceof Double) {
+            writeType(TYPE_DOUBLE);
+            spillOut.writeDouble((Double) value);
+            spillPosition += 8;
+        } else if (value instanceof Float) {
+            writeType(TYPE_FLOAT);
+            spillOut.writeFloat((Float) value);
+            spillPosition += 4;
+        } else if (value instanceof BigDecimal) {
+            writeType(TYPE_DECIMAL);
+            writeBytes(value.toString().getBytes(StandardCharsets.US_ASCII));
+        } else if (value instanceof BigInteger) {
+            writeType(TYPE_BIG_INTEGER);
+            writeBytes(((BigInteger) value).toByteArray());
+        } else if (value instanceof Boolean) {
+            writeType(TYPE_BOOLEAN);
+            spillOut.writeBoolean((Boolean) value);
+            spillPosition += 1;
+        } else if (value instanceof byte[]) {
+            writeType(TYPE_BYTES);
+            writeBytes((byte[]) value);
+        } else if (value instanceof Timestamp) {
+            writeType(TYPE_TIMESTAMP);
+            spillOut.writeLong(((Timestamp) value).getTime());
+            spillOut.writeInt(((Timestamp) value).getNanos());
+            spillPosition += 12;
+        } else if (value instanceof java.sql.Date) {
+            writeType(TYPE_DATE);
+            spillOut.writeLong(((java.sql.Date) value).getTime());
+            spillPosition += 8;
+        } else if (value instanceof Time) {
+            writeType(TYPE_TIME);
+            spillOut.writeLong(((Time) value).getTime());
+            spillPosition += 8;
+        } else if (value instanceof LocalDateTime) {
+            writeType(TYPE_LOCAL_DATE_TIME);
+            spillOut.writeLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+            spillOut.writeLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+            spillPosition += 16;
+        } else if (value instanceof LocalDate) {
+            writeType(TYPE_LOCAL_DATE);
+            spillOut.writeLong(((LocalDate) value).toEpochDay());
+            spillPosition += 8;
+        } else if (value instanceof LocalTime) {
+            writeType(TYPE_LOCAL_TIME);
+            spillOut.writeLong(((LocalTime) value).toNanoOfDay());
+            spillPosition += 8;
+        } else {
+            writeType(TYPE_STRING);
+            writeBytes(value.toString().getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private void writeType(byte type) throws IOException {
+        spillOut.writeByte(type);
+        spillPosition += 1;
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        spillOut.writeInt(bytes.length);
+        spillOut.write(bytes);
+        spillPosition += 4 + bytes.length;
+    }
+
+    private static Object readValue(ByteBuffer buffer) {
+        byte type = buffer.get();
+        switch (type) {
+            case TYPE_NULL:
+                return null;
+            case TYPE_STRING:
+                return new String(readBytes(buffer), StandardCharsets.UTF_8);
+            case TYPE_INT:
+                return buffer.getInt();
+            case TYPE_LONG:
+                return buffer.getLong();
+            case TYPE_DOUBLE:
+                return buffer.getDouble();
+            case TYPE_FLOAT:
+                return buffer.getFloat();
+            case TYPE_DECIMAL:
+                return new BigDecimal(new String(readBytes(buffer), StandardCharsets.US_ASCII));
+            case TYPE_BIG_INTEGER:
+                return new BigInteger(readBytes(buffer));
+            case TYPE_BOOLEAN:
+                return buffer.get() != 0;
+            case TYPE_BYTES:
+                return readBytes(buffer);
+            case TYPE_TIMESTAMP: {
+                Timestamp timestamp = new Timestamp(buffer.getLong());
+                timestamp.setNanos(buffer.getInt());
+                return timestamp;
+            }
+            case TYPE_DATE:
+                return new java.sql.Date(buffer.getLong());
+            case TYPE_TIME:
+                return new Time(buffer.getLong());
+            case TYPE_LOCAL_DATE_TIME: {
+                LocalDate date = LocalDate.ofEpochDay(buffer.getLong());
+                return LocalDateTime.of(date, LocalTime.ofNanoOfDay(buffer.getLong()));
+            }
+            case TYPE_LOCAL_DATE:
+                return LocalDate.ofEpochDay(buffer.getLong());
+            case TYPE_LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(buffer.getLong());
+            default:
+                throw new IllegalStateException("Corrupted spill file, unknown value type: " + type);
+        }
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // 粗略估算一行在堆内(LinkedHashMap)占用的字节数
+    private static long estimateRowBytes(Object[] values) {
+        long bytes = 64;
+        for (Object value : values) {
+            bytes += 48;
+            if (value instanceof String) {
+                bytes += 40 + 2L * ((String) value).length();
+            } else if (value instanceof byte[]) {
+                bytes += 16 + ((byte[]) value).length;
+            } else if (value instanceof BigDecimal || value instanceof BigInteger) {
+                bytes += 64;
+            } else if (value != null) {
+                bytes += 24;
+            }
+        }
+        return bytes;
+    }
+}
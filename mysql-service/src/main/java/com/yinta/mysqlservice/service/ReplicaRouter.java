@@ -0,0 +1,327 @@
+package com.yinta.mysqlservice.service;
+
+import com.yinta.mysqlservice.config.DatabaseConfig;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// 只读副本路由
+/// 为连接描述中声明的副本选择本次只读操作的目标: 定期检查各副本的复制延迟,
+/// 在延迟未超限且未被标记为故障的副本之间轮询或选择在途请求最少的一个; 没有可用副本时返回 null, 由调用方回退到主库。
+/// 副本的延迟和健康状态按 主机:端口 与凭据摘要在当前节点上共享, 不随会话保存;
+/// 连接副本时始终使用调用方会话自己的凭据, 不会用到其他会话声明的密码。
+@Slf4j
+@Service
+public class ReplicaRouter {
+    public static final String BALANCE_ROUND_ROBIN = "round-robin";
+    public static final String BALANCE_LEAST_LOADED = "least-loaded";
+
+    public static final String STATUS_UNCHECKED = "unchecked";
+    public static final String STATUS_REPLICATING = "replicating";
+    public static final String STATUS_NOT_REPLICATING = "not-replicating";
+    public static final String STATUS_STOPPED = "stopped";
+    public static final String STATUS_UNKNOWN = "unknown";
+    public static final String STATUS_DOWN = "down";
+
+    // 语法错误, 说明服务器不支持该语句
+    private static final int ER_PARSE_ERROR = 1064;
+
+    @Value("${app.replica.balance}")
+    private String balance;
+
+    @Value("${app.replica.max-lag-seconds}")
+    private long maxLagSeconds;
+
+    @Value("${app.replica.allow-unknown-lag}")
+    private boolean allowUnknownLag;
+
+    @Value("${app.replica.down-cooldown}")
+    private long downCooldown;
+
+    @Value("${app.replica.idle-timeout}")
+    private long idleTimeout;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger counter = new AtomicInteger();
+    private final AtomicLong primaryFallbacks = new AtomicLong();
+    // 凭据摘要的密钥, 每个进程随机生成, 摘要无法用于离线猜测密码
+    private final byte[] credentialKey = randomKey();
+
+    @PreDestroy
+    public void shutdown() {
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.closeMonitor();
+        }
+    }
+
+    /// 为只读操作选择副本
+    ///
+    /// @param config 会话的连接描述
+    /// @return Route 选中的副本和按会话凭据生成的连接配置, 使用完毕后必须调用 release; 没有可用副本时返回 null
+    public Route acquire(DatabaseConfig config) {
+        long now = System.currentTimeMillis();
+        List<Route> candidates = new ArrayList<>();
+        for (DatabaseConfig.Replica replica : config.getReplicas()) {
+            DatabaseConfig replicaConfig = toConfig(config, replica);
+            // 凭据不同的会话不共用状态: 密码错误的会话只会让自己的条目检查失败, 修改密码后也会重新检查
+            String key = replicaConfig.getHost() + ":" + replicaConfig.getPort() + "/" + credentialHash(replicaConfig);
+            Endpoint endpoint = endpoints.computeIfAbsent(key,
+                    k -> new Endpoint(k, replicaConfig.getHost(), replicaConfig.getPort()));
+            endpoint.lastUsedAt = now;
+            endpoint.monitorConfig = replicaConfig;
+            if (STATUS_UNCHECKED.equals(endpoint.status)) {
+                // 首次使用时同步检查一次, 之后由定时任务刷新
+                synchronized (endpoint) {
+                    if (STATUS_UNCHECKED.equals(endpoint.status)) {
+                        check(endpoint);
+                    }
+                }
+            }
+            if (isAvailable(endpoint, now)) {
+                candidates.add(new Route(endpoint, replicaConfig));
+            }
+        }
+        if (candidates.isEmpty()) {
+            primaryFallbacks.incrementAndGet();
+            return null;
+        }
+
+        int start = Math.floorMod(counter.getAndIncrement(), candidates.size());
+        Route selected = candidates.get(start);
+        if (BALANCE_LEAST_LOADED.equals(balance)) {
+            // 从轮询位置开始找在途请求最少的副本, 负载相同时仍然轮流分配
+            for (int i = 1; i < candidates.size(); i++) {
+                Route candidate = candidates.get((start + i) % candidates.size());
+                if (candidate.endpoint.inFlight.get() < selected.endpoint.inFlight.get()) {
+                    selected = candidate;
+                }
+            }
+        }
+        selected.endpoint.inFlight.incrementAndGet();
+        selected.endpoint.routed.incrementAndGet();
+        return selected;
+    }
+
+    public void release(Endpoint endpoint) {
+        endpoint.inFlight.decrementAndGet();
+    }
+
+    /// 把副本标记为故障, 冷却时间内不再路由
+    public void markDown(Endpoint endpoint, SQLException e) {
+        endpoint.downUntil = System.currentTimeMillis() + downCooldown;
+        endpoint.status = STATUS_DOWN;
+        log.warn("Replica {} marked down for {}ms: {}", endpoint.key, downCooldown, e.getMessage());
+    }
+
+    @Scheduled(fixedDelayString = "${app.replica.check-interval}")
+    public void checkReplicas() {
+        long now = System.currentTimeMillis();
+        for (Endpoint endpoint : endpoints.values()) {
+            if (now - endpoint.lastUsedAt > idleTimeout && endpoint.inFlight.get() == 0) {
+                log.info("Removing idle replica {}", endpoint.key);
+                endpoints.remove(endpoint.key);
+                endpoint.closeMonitor();
+                continue;
+            }
+            check(endpoint);
+        }
+    }
+
+    /// 各副本的状态, 复制延迟, 在途请求数和累计路由次数
+    /// 只包含主机和端口, 不公开用户名, 凭据摘要和错误详情(错误只记录在日志中)
+    public Map<String, Object> getMetrics() {
+        List<Map<String, Object>> replicas = new ArrayList<>();
+        for (Endpoint endpoint : endpoints.values()) {
+            Map<String, Object> replica = new LinkedHashMap<>();
+            replica.put("endpoint", endpoint.host + ":" + endpoint.port);
+            replica.put("status", endpoint.status);
+            replica.put("available", isAvailable(endpoint, System.currentTimeMillis()));
+            replica.put("lagSeconds", endpoint.lagSeconds);
+            replica.put("inFlight", endpoint.inFlight.get());
+            replica.put("routed", endpoint.routed.get());
+            replica.put("checkedAt", endpoint.checkedAt);
+            replicas.add(replica);
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("balance", balance);
+        metrics.put("maxLagSeconds", maxLagSeconds);
+        metrics.put("primaryFallbacks", primaryFallbacks.get());
+        metrics.put("replicas", replicas);
+        return metrics;
+    }
+
+    private boolean isAvailable(Endpoint endpoint, long now) {
+        if (now < endpoint.downUntil) {
+            return false;
+        }
+        switch (endpoint.status) {
+            case STATUS_REPLICATING:
+                return endpoint.lagSeconds != null && endpoint.lagSeconds <= maxLagSeconds;
+            case STATUS_NOT_REPLICATING:
+            case STATUS_UNKNOWN:
+                return allowUnknownLag;
+            default:
+                return false;
+        }
+    }
+
+    private void check(Endpoint endpoint) {
+        synchronized (endpoint) {
+            try {
+                if (endpoint.monitor == null || endpoint.monitor.isClosed()) {
+                    DatabaseConfig config = endpoint.monitorConfig;
+                    String url = String.format("jdbc:mysql://%s:%d/?useSSL=false&allowPublicKeyRetrieval=true"
+                            + "&connectTimeout=2000&socketTimeout=5000", endpoint.host, endpoint.port);
+                    endpoint.monitor = DriverManager.getConnection(url, config.getUsername(), config.getPassword());
+                }
+                readLag(endpoint);
+            } catch (SQLException e) {
+                endpoint.closeMonitor();
+                markDown(endpoint, e);
+            } finally {
+                endpoint.checkedAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    // MySQL 8.0.22 起使用 SHOW REPLICA STATUS, 更早的版本和旧版 MariaDB 只支持 SHOW SLAVE STATUS
+    private void readLag(Endpoint endpoint) throws SQLException {
+        for (String sql : new String[]{"SHOW REPLICA STATUS", "SHOW SLAVE STATUS"}) {
+            try (Statement stmt = endpoint.monitor.createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
+                if (!rs.next()) {
+                    // 不是副本, 无法判断数据是否同步
+                    endpoint.status = STATUS_NOT_REPLICATING;
+                    endpoint.lagSeconds = null;
+                    return;
+                }
+                Object lag = rs.getObject(lagColumn(rs.getMetaData()));
+                endpoint.status = lag != null ? STATUS_REPLICATING : STATUS_STOPPED;
+                endpoint.lagSeconds = lag != null ? ((Number) lag).longValue() : null;
+                return;
+            } catch (SQLException e) {
+                if (e.getErrorCode() == ER_PARSE_ERROR) {
+                    continue;
+                }
+                if ("42000".equals(e.getSQLState())) {
+                    // 缺少 REPLICATION CLIENT 权限, 状态变化时记录一次
+                    if (!STATUS_UNKNOWN.equals(endpoint.status)) {
+                        log.warn("Cannot read replication status of {}: {}", endpoint.key, e.getMessage());
+                    }
+                    endpoint.status = STATUS_UNKNOWN;
+                    endpoint.lagSeconds = null;
+                    return;
+                }
+                throw e;
+            }
+        }
+        endpoint.status = STATUS_UNKNOWN;
+        endpoint.lagSeconds = null;
+    }
+
+    private static int lagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String name = metaData.getColumnLabel(i);
+            if ("Seconds_Behind_Source".equalsIgnoreCase(name) || "Seconds_Behind_Master".equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new SQLException("Replication status has no Seconds_Behind column");
+    }
+
+    private static DatabaseConfig toConfig(DatabaseConfig primary, DatabaseConfig.Replica replica) {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setHost(replica.getHost());
+        config.setPort(replica.getPort());
+        config.setUsername(replica.getUsername() != null ? replica.getUsername() : primary.getUsername());
+        config.setPassword(replica.getPassword() != null ? replica.getPassword() : primary.getPassword());
+        config.setDatabase(primary.getDatabase());
+        return config;
+    }
+
+    private static byte[] randomKey() {
+        byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        return key;
+    }
+
+    private String credentialHash(DatabaseConfig config) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(credentialKey, "HmacSHA256"));
+            mac.update(String.valueOf(config.getUsername()).getBytes(StandardCharsets.UTF_8));
+            mac.update((byte) 0);
+            mac.update(String.valueOf(config.getPassword()).getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : Arrays.copyOf(mac.doFinal(), 8)) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /// 一次选择的结果: 共享的副本状态, 以及按调用方会话的凭据和当前库生成的连接配置
+    public static class Route {
+        @Getter
+        private final Endpoint endpoint;
+        @Getter
+        private final DatabaseConfig config;
+
+        private Route(Endpoint endpoint, DatabaseConfig config) {
+            this.endpoint = endpoint;
+            this.config = config;
+        }
+    }
+
+    public static class Endpoint {
+        @Getter
+        private final String key;
+        private final String host;
+        private final int port;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong routed = new AtomicLong();
+        private volatile String status = STATUS_UNCHECKED;
+        private volatile Long lagSeconds;
+        private volatile long checkedAt;
+        private volatile long downUntil;
+        private volatile long lastUsedAt;
+        // 最近使用该条目的会话的副本配置, 凭据与条目的摘要一致, 只用于打开检查连接
+        private volatile DatabaseConfig monitorConfig;
+        // 检查复制延迟专用的连接
+        private Connection monitor;
+
+        private Endpoint(String key, String host, int port) {
+            this.key = key;
+            this.host = host;
+            this.port = port;
+        }
+
+        private synchronized void closeMonitor() {
+            if (monitor != null) {
+                try {
+                    monitor.close();
+                } catch (SQLException e) {
+                    log.debug("Error closing replica monitor connection", e);
+                }
+                monitor = null;
+            }
+        }
+    }
+}
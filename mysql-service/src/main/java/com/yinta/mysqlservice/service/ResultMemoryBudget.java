@@ -0,0 +1,67 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicLong;
+
+/// 查询结果内存预算
+/// 限制单个请求和整个服务中物化在堆内的查询结果大小, 超出阈值的行溢出到临时文件
+@Slf4j
+@Getter
+@Service
+public class ResultMemoryBudget {
+
+    // 单次查询最多返回的行数, 超出时截断
+    @Value("${app.query.max-rows}")
+    private long maxRows;
+
+    // 单次查询结果的最大估算字节数(内存加磁盘), 超出时截断
+    @Value("${app.query.max-bytes}")
+    private long maxBytes;
+
+    // 单次查询在堆内保留的最大估算字节数, 超出后溢出到磁盘
+    @Value("${app.query.memory-threshold-bytes}")
+    private long memoryThresholdBytes;
+
+    // 所有请求共享的堆内结果预算
+    @Value("${app.query.global-memory-bytes}")
+    private long globalMemoryBytes;
+
+    @Value("${app.query.spill-dir}")
+    private String spillDir;
+
+    private final AtomicLong reservedBytes = new AtomicLong();
+
+    public boolean tryReserve(long bytes) {
+        while (true) {
+            long current = reservedBytes.get();
+            if (current + bytes > globalMemoryBytes) {
+                return false;
+            }
+            if (reservedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long bytes) {
+        if (bytes > 0) {
+            reservedBytes.addAndGet(-bytes);
+        }
+    }
+
+    public Path createSpillFile() throws IOException {
+        Path dir = Paths.get(spillDir);
+        Files.createDirectories(dir);
+        Path file = Files.createTempFile(dir, "query-", ".spill");
+        log.debug("Created spill file: {}", file);
+        return file;
+    }
+}
@@ -0,0 +1,11 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.Data;
+
+/// DDL 执行后发布的事件, 用于增量刷新表名搜索索引
+@Data
+public class SchemaChangedEvent {
+    private final String connectionId;
+    // 发生变化的库, 为 null 时表示可能涉及多个库(如 CREATE/DROP DATABASE)
+    private final String schema;
+}
@@ -0,0 +1,28 @@
+package com.yinta.mysqlservice.service;
+
+import com.yinta.mysqlservice.config.DatabaseConfig;
+
+/// 会话存储
+/// 保存 connectionId 对应的连接描述(目标地址和凭据), 任意节点都可以据此按需重新打开连接。
+/// 默认实现只保存在当前进程内, 并由令牌中携带的加密描述自动补全; 需要集中存储时可提供其他实现并标记为 @Primary。
+/// 断开连接时记录的撤销信息同样保存在这里, 使用集中存储时撤销对所有节点生效。
+public interface SessionStore {
+
+    void save(String connectionId, DatabaseConfig config);
+
+    /// @return DatabaseConfig 连接描述, 不存在时返回 null
+    DatabaseConfig find(String connectionId);
+
+    void remove(String connectionId);
+
+    /// 记录会话最近一次写操作的时间, 之后一段时间内的读操作留在主库
+    void recordWrite(String connectionId, long time);
+
+    /// @return Long 最近一次写操作的时间, 没有记录时返回 null
+    Long findLastWrite(String connectionId);
+
+    /// 记录连接已断开, 在 until(毫秒时间戳)之前不再接受携带该连接ID的令牌
+    void revoke(String connectionId, long until);
+
+    boolean isRevoked(String connectionId);
+}
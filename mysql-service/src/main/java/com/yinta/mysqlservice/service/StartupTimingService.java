@@ -0,0 +1,165 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.boot.context.metrics.buffering.StartupTimeline;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.support.ServletRequestHandledEvent;
+
+import javax.annotation.Resource;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.*;
+
+/// 启动耗时统计
+/// 汇总 BufferingApplicationStartup 记录的启动步骤, 给出各阶段和各 Bean 的初始化耗时,
+/// 以及从 JVM 启动到应用就绪, 到第一个请求处理完成的时间
+@Slf4j
+@Service
+public class StartupTimingService {
+    private static final String BEAN_INSTANTIATE_STEP = "spring.beans.instantiate";
+
+    @Resource
+    private ApplicationStartup applicationStartup;
+
+    @Resource
+    private Environment environment;
+
+    // 用于构建 CDS 归档的训练运行: 启动完成后立即退出
+    @Value("${app.startup.exit-on-ready:false}")
+    private boolean exitOnReady;
+
+    private volatile long startedMs = -1;
+    private volatile long readyMs = -1;
+    private volatile long firstRequestMs = -1;
+
+    @EventListener
+    public void onStarted(ApplicationStartedEvent event) {
+        startedMs = uptime();
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        readyMs = uptime();
+        log.info("Application ready {}ms after JVM start", readyMs);
+        if (exitOnReady) {
+            log.info("Exiting after startup because app.startup.exit-on-ready is set");
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    @EventListener
+    public void onRequestHandled(ServletRequestHandledEvent event) {
+        if (firstRequestMs < 0) {
+            synchronized (this) {
+                if (firstRequestMs < 0) {
+                    firstRequestMs = uptime();
+                    log.info("First request {} served {}ms after JVM start", event.getRequestUrl(), firstRequestMs);
+                }
+            }
+        }
+    }
+
+    /// 启动耗时
+    ///
+    /// @param limit 返回的 Bean 条数上限, 按自身耗时降序
+    /// @return Map<String, Object> 包含 milestones(相对 JVM 启动的毫秒数), phases(顶层阶段),
+    ///         steps(按步骤名汇总), beans(各 Bean 的总耗时和扣除依赖后的自身耗时)
+    public Map<String, Object> getTiming(int limit) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("profiles", environment.getActiveProfiles());
+
+        Map<String, Object> milestones = new LinkedHashMap<>();
+        milestones.put("jvmStartedAt", ManagementFactory.getRuntimeMXBean().getStartTime());
+        milestones.put("contextStartedMs", startedMs >= 0 ? startedMs : null);
+        milestones.put("readyMs", readyMs >= 0 ? readyMs : null);
+        milestones.put("firstRequestMs", firstRequestMs >= 0 ? firstRequestMs : null);
+        response.put("milestones", milestones);
+
+        if (!(applicationStartup instanceof BufferingApplicationStartup)) {
+            response.put("error", "Startup steps are not recorded, start the application through MysqlServiceApplication.main");
+            return response;
+        }
+        StartupTimeline timeline = ((BufferingApplicationStartup) applicationStartup).getBufferedTimeline();
+        List<StartupTimeline.TimelineEvent> events = timeline.getEvents();
+
+        // 子步骤耗时之和, 用于计算自身耗时
+        Map<Long, Long> childNanos = new HashMap<>();
+        for (StartupTimeline.TimelineEvent event : events) {
+            Long parentId = event.getStartupStep().getParentId();
+            if (parentId != null) {
+                childNanos.merge(parentId, event.getDuration().toNanos(), Long::sum);
+            }
+        }
+
+        List<Map<String, Object>> phases = new ArrayList<>();
+        Map<String, long[]> steps = new TreeMap<>();
+        List<Map<String, Object>> beans = new ArrayList<>();
+        for (StartupTimeline.TimelineEvent event : events) {
+            StartupStep step = event.getStartupStep();
+            long nanos = event.getDuration().toNanos();
+            long[] total = steps.computeIfAbsent(step.getName(), key -> new long[2]);
+            total[0]++;
+            total[1] += nanos;
+
+            if (step.getParentId() == null) {
+                Map<String, Object> phase = new LinkedHashMap<>();
+                phase.put("name", step.getName());
+                phase.put("offsetMs", millis(Duration.between(timeline.getStartTime(), event.getStartTime())));
+                phase.put("durationMs", millis(event.getDuration()));
+                phases.add(phase);
+            }
+            if (BEAN_INSTANTIATE_STEP.equals(step.getName())) {
+                Map<String, Object> bean = new LinkedHashMap<>();
+                bean.put("bean", tag(step, "beanName"));
+                bean.put("totalMs", millis(event.getDuration()));
+                bean.put("selfMs", millis(Duration.ofNanos(nanos - childNanos.getOrDefault(step.getId(), 0L))));
+                bean.put("offsetMs", millis(Duration.between(timeline.getStartTime(), event.getStartTime())));
+                beans.add(bean);
+            }
+        }
+        phases.sort(Comparator.comparingDouble(phase -> (Double) phase.get("offsetMs")));
+        beans.sort((a, b) -> Double.compare((Double) b.get("selfMs"), (Double) a.get("selfMs")));
+
+        List<Map<String, Object>> stepTotals = new ArrayList<>();
+        for (Map.Entry<String, long[]> step : steps.entrySet()) {
+            Map<String, Object> total = new LinkedHashMap<>();
+            total.put("name", step.getKey());
+            total.put("count", step.getValue()[0]);
+            total.put("totalMs", millis(Duration.ofNanos(step.getValue()[1])));
+            stepTotals.add(total);
+        }
+
+        response.put("recordedSteps", events.size());
+        response.put("phases", phases);
+        response.put("steps", stepTotals);
+        response.put("beanCount", beans.size());
+        response.put("beans", beans.subList(0, Math.max(0, Math.min(limit, beans.size()))));
+        return response;
+    }
+
+    private static String tag(StartupStep step, String key) {
+        for (StartupStep.Tag tag : step.getTags()) {
+            if (key.equals(tag.getKey())) {
+                return tag.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static double millis(Duration duration) {
+        return Math.round(duration.toNanos() / 1000.0) / 1000.0;
+    }
+
+    private static long uptime() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
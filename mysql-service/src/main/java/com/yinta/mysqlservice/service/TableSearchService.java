@@ -0,0 +1,368 @@
+package com.yinta.mysqlservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/// 表名搜索服务
+/// 为每个目标服务器(用户@主机:端口)在内存中维护库名和表名的索引:
+/// 一次扫描 information_schema.TABLES 建立, DDL 执行后按库增量刷新, 超过有效期后在后台整体重建。
+/// 表名和库名前缀通过有序数组二分查找, 表名子串通过三字母组倒排表求交集, 查询不访问数据库。
+@Slf4j
+@Service
+public class TableSearchService {
+    private static final long REBUILD_INTERVAL_MS = 10 * 60 * 1000;
+    private static final int MAX_LIMIT = 500;
+
+    private static final int SCORE_EXACT = 100;
+    private static final int SCORE_PREFIX = 80;
+    private static final int SCORE_WORD_PREFIX = 60;
+    private static final int SCORE_SUBSTRING = 40;
+    private static final int SCORE_SCHEMA = 20;
+
+    @Resource
+    private DatabaseService databaseService;
+
+    private final Map<String, TargetIndex> indexes = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "table-index-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /// 搜索表名
+    ///
+    /// @param connectionId 连接ID
+    /// @param query 搜索词, 支持 库名.表名 形式
+    /// @param limit 最多返回的条数
+    /// @return Map<String, Object> 包含 total, results(按相关度排序), indexedAt, tookMicros
+    public Map<String, Object> search(String connectionId, String query, int limit) throws SQLException {
+        String serverKey = databaseService.getServerKey(connectionId);
+        TargetIndex index = indexes.computeIfAbsent(serverKey, key -> new TargetIndex());
+        Snapshot snapshot = index.snapshot;
+        if (snapshot == null) {
+            synchronized (index) {
+                if (index.snapshot == null) {
+                    index.snapshot = build(databaseService.getTableStatistics(connectionId, null));
+                    log.info("Built table index for {} with {} tables", serverKey, index.snapshot.entries.length);
+                }
+                snapshot = index.snapshot;
+            }
+        } else if (System.currentTimeMillis() - snapshot.builtAt > REBUILD_INTERVAL_MS) {
+            refresh(index, connectionId, null);
+        }
+
+        long start = System.nanoTime();
+        List<Match> matches = snapshot.search(query.trim().toLowerCase(Locale.ROOT));
+        List<Map<String, Object>> results = new ArrayList<>();
+        for (Match match : matches.subList(0, Math.max(0, Math.min(Math.min(limit, MAX_LIMIT), matches.size())))) {
+            Entry entry = match.entry;
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("schema", entry.schema);
+            result.put("table", entry.table);
+            result.put("rows", entry.rows);
+            result.put("dataLength", entry.dataLength);
+            result.put("score", match.score);
+            results.add(result);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("total", matches.size());
+        response.put("results", results);
+        response.put("indexedAt", snapshot.builtAt);
+        response.put("tookMicros", (System.nanoTime() - start) / 1000);
+        return response;
+    }
+
+    @EventListener
+    public void onSchemaChanged(SchemaChangedEvent event) {
+        String serverKey;
+        try {
+            serverKey = databaseService.getServerKey(event.getConnectionId());
+        } catch (IllegalStateException e) {
+            return;
+        }
+        TargetIndex index = indexes.get(serverKey);
+        if (index != null && index.snapshot != null) {
+            refresh(index, event.getConnectionId(), event.getSchema());
+        }
+    }
+
+    // 在后台刷新索引, schema 为 null 时整体重建
+    private void refresh(TargetIndex index, String connectionId, String schema) {
+        if (schema == null && !index.rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        refreshExecutor.execute(() -> {
+            try {
+                List<Map<String, Object>> tables = databaseService.getTableStatistics(connectionId, schema);
+                synchronized (index) {
+                    if (schema == null) {
+                        index.snapshot = build(tables);
+                    } else {
+                        List<Map<String, Object>> merged = new ArrayList<>(tables);
+                        for (Entry entry : index.snapshot.entries) {
+                            if (!entry.schema.equals(schema)) {
+                                merged.add(entry.toMap());
+                            }
+                        }
+                        index.snapshot = build(merged, index.snapshot.builtAt);
+                    }
+                }
+                log.debug("Refreshed table index for schema {}", schema != null ? schema : "*");
+            } catch (Exception e) {
+                log.warn("Failed to refresh table index: {}", e.getMessage());
+            } finally {
+                if (schema == null) {
+                    index.rebuilding.set(false);
+                }
+            }
+        });
+    }
+
+    private static Snapshot build(List<Map<String, Object>> tables) {
+        return build(tables, System.currentTimeMillis());
+    }
+
+    private static Snapshot build(List<Map<String, Object>> tables, long builtAt) {
+        Entry[] entries = new Entry[tables.size()];
+        for (int i = 0; i < entries.length; i++) {
+            Map<String, Object> table = tables.get(i);
+            entries[i] = new Entry((String) table.get("schema"), (String) table.get("table"),
+                    (Long) table.get("rows"), (Long) table.get("dataLength"));
+        }
+        return new Snapshot(entries, builtAt);
+    }
+
+    private static class TargetIndex {
+        volatile Snapshot snapshot;
+        final AtomicBoolean rebuilding = new AtomicBoolean();
+    }
+
+    private static class Entry {
+        final String schema;
+        final String table;
+        final String schemaKey;
+        final String tableKey;
+        final Long rows;
+        final Long dataLength;
+
+        Entry(String schema, String table, Long rows, Long dataLength) {
+            this.schema = schema;
+            this.table = table;
+            this.schemaKey = schema.toLowerCase(Locale.ROOT);
+            this.tableKey = table.toLowerCase(Locale.ROOT);
+            this.rows = rows;
+            this.dataLength = dataLength;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("schema", schema);
+            map.put("table", table);
+            map.put("rows", rows);
+            map.put("dataLength", dataLength);
+            return map;
+        }
+    }
+
+    private static class Match {
+        final Entry entry;
+        final int score;
+
+        Match(Entry entry, int score) {
+            this.entry = entry;
+            this.score = score;
+        }
+    }
+
+    // 不可变的索引快照, 刷新时整体替换
+    private static class Snapshot {
+        final Entry[] entries;
+        final long builtAt;
+        // 按小写表名排序的下标, 用于前缀查找
+        final int[] sorted;
+        // 按小写库名排序的下标, 用于库名前缀查找
+        final int[] sortedBySchema;
+        // 三字母组 -> 表名包含该组的条目下标(升序)
+        final Map<String, int[]> trigrams;
+
+        Snapshot(Entry[] entries, long builtAt) {
+            this.entries = entries;
+            this.builtAt = builtAt;
+
+            Integer[] order = new Integer[entries.length];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparing(i -> entries[i].tableKey));
+            sorted = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sorted[i] = order[i];
+            }
+            Arrays.sort(order, Comparator.comparing(i -> entries[i].schemaKey));
+            sortedBySchema = new int[order.length];
+            for (int i = 0; i < order.length; i++) {
+                sortedBySchema[i] = order[i];
+            }
+
+            Map<String, List<Integer>> postings = new HashMap<>();
+            for (int i = 0; i < entries.length; i++) {
+                String key = entries[i].tableKey;
+                Set<String> seen = new HashSet<>();
+                for (int j = 0; j + 3 <= key.length(); j++) {
+                    String trigram = key.substring(j, j + 3);
+                    if (seen.add(trigram)) {
+                        postings.computeIfAbsent(trigram, k -> new ArrayList<>()).add(i);
+                    }
+                }
+            }
+            trigrams = new HashMap<>(postings.size() * 2);
+            for (Map.Entry<String, List<Integer>> posting : postings.entrySet()) {
+                List<Integer> list = posting.getValue();
+                int[] ids = new int[list.size()];
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = list.get(i);
+                }
+                trigrams.put(posting.getKey(), ids);
+            }
+        }
+
+        List<Match> search(String query) {
+            String schemaQuery = null;
+            String tableQuery = query;
+            int dot = query.indexOf('.');
+            if (dot >= 0) {
+                schemaQuery = query.substring(0, dot);
+                tableQuery = query.substring(dot + 1);
+            }
+
+            Map<Integer, Integer> scores = new HashMap<>();
+            if (!tableQuery.isEmpty()) {
+                matchPrefix(tableQuery, scores);
+                matchSubstring(tableQuery, scores);
+            }
+            if (schemaQuery == null) {
+                // 库名匹配的表排在表名匹配之后
+                for (int i = lowerBound(sortedBySchema, tableQuery, true); i < sortedBySchema.length
+                        && entries[sortedBySchema[i]].schemaKey.startsWith(tableQuery); i++) {
+                    scores.putIfAbsent(sortedBySchema[i], SCORE_SCHEMA);
+                }
+            }
+
+            List<Match> matches = new ArrayList<>(scores.size());
+            for (Map.Entry<Integer, Integer> score : scores.entrySet()) {
+                Entry entry = entries[score.getKey()];
+                if (schemaQuery == null || entry.schemaKey.startsWith(schemaQuery)) {
+                    matches.add(new Match(entry, score.getValue()));
+                }
+            }
+            if (schemaQuery != null && tableQuery.isEmpty()) {
+                for (int i = lowerBound(sortedBySchema, schemaQuery, true); i < sortedBySchema.length
+                        && entries[sortedBySchema[i]].schemaKey.startsWith(schemaQuery); i++) {
+                    matches.add(new Match(entries[sortedBySchema[i]], SCORE_SCHEMA));
+                }
+            }
+
+            matches.sort((a, b) -> {
+                if (a.score != b.score) {
+                    return b.score - a.score;
+                }
+                if (a.entry.table.length() != b.entry.table.length()) {
+                    return a.entry.table.length() - b.entry.table.length();
+                }
+                int bySchema = a.entry.schemaKey.compareTo(b.entry.schemaKey);
+                return bySchema != 0 ? bySchema : a.entry.tableKey.compareTo(b.entry.tableKey);
+            });
+            return matches;
+        }
+
+        // 有序下标中第一个键不小于 key 的位置, 以 key 为前缀的条目从这里开始连续排列
+        private int lowerBound(int[] order, String key, boolean bySchema) {
+            int low = 0;
+            int high = order.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                Entry entry = entries[order[mid]];
+                if ((bySchema ? entry.schemaKey : entry.tableKey).compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private void matchPrefix(String query, Map<Integer, Integer> scores) {
+            for (int i = lowerBound(sorted, query, false); i < sorted.length && entries[sorted[i]].tableKey.startsWith(query); i++) {
+                int id = sorted[i];
+                scores.put(id, entries[id].tableKey.length() == query.length() ? SCORE_EXACT : SCORE_PREFIX);
+            }
+        }
+
+        private void matchSubstring(String query, Map<Integer, Integer> scores) {
+            int[] candidates = query.length() >= 3 ? intersectTrigrams(query) : null;
+            int count = candidates != null ? candidates.length : entries.length;
+            for (int n = 0; n < count; n++) {
+                int id = candidates != null ? candidates[n] : n;
+                if (scores.containsKey(id)) {
+                    continue;
+                }
+                String key = entries[id].tableKey;
+                int position = key.indexOf(query);
+                if (position > 0) {
+                    char previous = key.charAt(position - 1);
+                    scores.put(id, previous == '_' || previous == '-' || previous == '$' ? SCORE_WORD_PREFIX : SCORE_SUBSTRING);
+                }
+            }
+        }
+
+        private int[] intersectTrigrams(String query) {
+            int[] result = null;
+            for (int j = 0; j + 3 <= query.length(); j++) {
+                int[] ids = trigrams.get(query.substring(j, j + 3));
+                if (ids == null) {
+                    return new int[0];
+                }
+                result = result == null ? ids : intersect(result, ids);
+                if (result.length == 0) {
+                    break;
+                }
+            }
+            return result;
+        }
+
+        private static int[] intersect(int[] a, int[] b) {
+            int[] out = new int[Math.min(a.length, b.length)];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    out[k++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(out, k);
+        }
+    }
+}
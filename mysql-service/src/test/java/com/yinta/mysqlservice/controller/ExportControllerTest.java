@@ -0,0 +1,42 @@
+package com.yinta.mysqlservice.controller;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportControllerTest {
+
+    @Test
+    void parsesByteRanges() {
+        assertArrayEquals(new long[]{0, 99}, ExportController.parseRange("bytes=0-99", 1000));
+        assertArrayEquals(new long[]{500, 999}, ExportController.parseRange("bytes=500-", 1000));
+        assertArrayEquals(new long[]{900, 999}, ExportController.parseRange("bytes=-100", 1000));
+        // 结束位置超出文件时截到末尾, 后缀长度超出文件时返回整个文件
+        assertArrayEquals(new long[]{990, 999}, ExportController.parseRange("bytes=990-5000", 1000));
+        assertArrayEquals(new long[]{0, 999}, ExportController.parseRange("bytes=-5000", 1000));
+        // 多个范围时只取第一个
+        assertArrayEquals(new long[]{0, 9}, ExportController.parseRange("bytes=0-9, 20-29", 1000));
+    }
+
+    @Test
+    void rejectsUnsatisfiableRanges() {
+        assertNull(ExportController.parseRange("bytes=1000-", 1000));
+        assertNull(ExportController.parseRange("bytes=10-5", 1000));
+        assertNull(ExportController.parseRange("bytes=-0", 1000));
+        assertNull(ExportController.parseRange("bytes=0-", 0));
+        assertNull(ExportController.parseRange("bytes=abc", 1000));
+        assertNull(ExportController.parseRange("bytes=a-b", 1000));
+        assertNull(ExportController.parseRange("items=0-9", 1000));
+    }
+
+    @Test
+    void ifRangeMustMatchTheCurrentEtag() {
+        String etag = "\"job1-1000\"";
+        assertTrue(ExportController.rangeApplies("bytes=0-9", null, etag));
+        assertTrue(ExportController.rangeApplies("bytes=0-9", etag, etag));
+        // 文件已变化或传的是日期时返回完整文件
+        assertFalse(ExportController.rangeApplies("bytes=0-9", "\"job1-999\"", etag));
+        assertFalse(ExportController.rangeApplies("bytes=0-9", "Wed, 21 Oct 2015 07:28:00 GMT", etag));
+        assertFalse(ExportController.rangeApplies(null, etag, etag));
+    }
+}
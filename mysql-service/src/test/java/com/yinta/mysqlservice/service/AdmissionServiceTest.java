@@ -0,0 +1,130 @@
+package com.yinta.mysqlservice.service;
+
+import com.yinta.mysqlservice.service.AdmissionService.AdmissionRejectedException;
+import com.yinta.mysqlservice.service.AdmissionService.Lane;
+import com.yinta.mysqlservice.service.AdmissionService.Permit;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionServiceTest {
+
+    private AdmissionService admission(int maxConcurrent, int perSession, int perTarget, int queueCapacity,
+                                       long maxWait) {
+        AdmissionService service = new AdmissionService();
+        ReflectionTestUtils.setField(service, "metadataMaxConcurrent", 1);
+        ReflectionTestUtils.setField(service, "metadataPerSession", 1);
+        ReflectionTestUtils.setField(service, "metadataPerTarget", 1);
+        ReflectionTestUtils.setField(service, "metadataQueueCapacity", 1);
+        ReflectionTestUtils.setField(service, "metadataMaxWait", 1000L);
+        ReflectionTestUtils.setField(service, "heavyMaxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(service, "heavyPerSession", perSession);
+        ReflectionTestUtils.setField(service, "heavyPerTarget", perTarget);
+        ReflectionTestUtils.setField(service, "heavyQueueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(service, "heavyMaxWait", maxWait);
+        ReflectionTestUtils.setField(service, "tomcatMaxThreads", 200);
+        service.init();
+        return service;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int queued(AdmissionService service) {
+        return (Integer) ((Map<String, Object>) service.getMetrics().get("heavy")).get("queued");
+    }
+
+    private static void awaitQueued(AdmissionService service, int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queued(service) != expected) {
+            assertTrue(System.currentTimeMillis() < deadline, "expected " + expected + " queued requests");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void perTargetLimitIsSharedAcrossSessions() throws Exception {
+        AdmissionService service = admission(8, 2, 1, 8, 200);
+
+        try (Permit first = service.acquire(Lane.HEAVY, "a", "db1:3306")) {
+            // 其他会话访问同一目标时排队直到超时, 访问其他目标不受影响
+            assertThrows(AdmissionRejectedException.class, () -> service.acquire(Lane.HEAVY, "b", "db1:3306"));
+            try (Permit other = service.acquire(Lane.HEAVY, "b", "db2:3306")) {
+                assertNotNull(other);
+            }
+        }
+        try (Permit again = service.acquire(Lane.HEAVY, "b", "db1:3306")) {
+            assertNotNull(again);
+        }
+    }
+
+    @Test
+    void releasedSlotGoesToTheWaitingTarget() throws Exception {
+        AdmissionService service = admission(8, 2, 1, 8, 5000);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Permit first = service.acquire(Lane.HEAVY, "a", "db1:3306");
+            Future<?> waiter = executor.submit(() -> {
+                service.acquire(Lane.HEAVY, "b", "db1:3306").close();
+                return null;
+            });
+            awaitQueued(service, 1);
+            first.close();
+            waiter.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void waitingSessionsTakeTurns() throws Exception {
+        AdmissionService service = admission(1, 4, 4, 8, 5000);
+        List<String> order = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newCachedThreadPool();
+        try {
+            Permit running = service.acquire(Lane.HEAVY, "a", "db1:3306");
+            // 会话 a 先排入两个请求, 会话 b 之后排入一个
+            Future<?> a2 = submit(executor, service, "a", "a2", order);
+            awaitQueued(service, 1);
+            Future<?> a3 = submit(executor, service, "a", "a3", order);
+            awaitQueued(service, 2);
+            Future<?> b1 = submit(executor, service, "b", "b1", order);
+            awaitQueued(service, 3);
+
+            running.close();
+            a2.get(5, TimeUnit.SECONDS);
+            a3.get(5, TimeUnit.SECONDS);
+            b1.get(5, TimeUnit.SECONDS);
+            assertEquals(Arrays.asList("a2", "b1", "a3"), order);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void rejectsWhenTheQueueIsFull() throws Exception {
+        AdmissionService service = admission(1, 1, 1, 0, 5000);
+
+        try (Permit running = service.acquire(Lane.HEAVY, "a", "db1:3306")) {
+            assertThrows(AdmissionRejectedException.class, () -> service.acquire(Lane.HEAVY, "b", "db2:3306"));
+        }
+    }
+
+    private static Future<?> submit(ExecutorService executor, AdmissionService service, String sessionId,
+                                    String name, List<String> order) {
+        return executor.submit(() -> {
+            try (Permit permit = service.acquire(Lane.HEAVY, sessionId, "db1:3306")) {
+                order.add(name);
+            }
+            return null;
+        });
+    }
+}
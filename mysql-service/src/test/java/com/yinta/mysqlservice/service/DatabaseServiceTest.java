@@ -0,0 +1,84 @@
+package com.yinta.mysqlservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseServiceTest {
+
+    private static Set<String> schemas(String... names) {
+        return new LinkedHashSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    void plainReadsAreReplicaSafe() {
+        assertTrue(DatabaseService.isReplicaSafe("SELECT * FROM orders WHERE id = 1"));
+        assertTrue(DatabaseService.isReplicaSafe("SELECT 1"));
+        assertTrue(DatabaseService.isReplicaSafe("select count(*) from t where note like '%for%'"));
+        assertTrue(DatabaseService.isReplicaSafe("SELECT row_count_total FROM stats"));
+    }
+
+    @Test
+    void lockingReadsStayOnThePrimary() {
+        assertFalse(DatabaseService.isReplicaSafe("SELECT * FROM orders WHERE id = 1 FOR UPDATE"));
+        assertFalse(DatabaseService.isReplicaSafe("SELECT * FROM orders\n  FOR\tSHARE"));
+        assertFalse(DatabaseService.isReplicaSafe("SELECT * FROM orders LOCK IN SHARE MODE"));
+        assertFalse(DatabaseService.isReplicaSafe("SELECT * INTO OUTFILE '/tmp/x' FROM orders"));
+    }
+
+    @Test
+    void readsOfSessionStateStayOnThePrimary() {
+        assertFalse(DatabaseService.isReplicaSafe("SELECT @total"));
+        assertFalse(DatabaseService.isReplicaSafe("SELECT * FROM orders WHERE id = @@last_id"));
+        assertFalse(DatabaseService.isReplicaSafe("SELECT LAST_INSERT_ID()"));
+        assertFalse(DatabaseService.isReplicaSafe("select found_rows ()"));
+        assertFalse(DatabaseService.isReplicaSafe("SELECT ROW_COUNT()"));
+        assertFalse(DatabaseService.isReplicaSafe("SELECT CONNECTION_ID()"));
+        assertFalse(DatabaseService.isReplicaSafe("SELECT IS_FREE_LOCK('job')"));
+    }
+
+    @Test
+    void detectsStatementsThatCreateSessionState() {
+        assertTrue(DatabaseService.createsSessionState("CREATE TEMPORARY TABLE tmp (id int)"));
+        assertTrue(DatabaseService.createsSessionState("SET @total = 1"));
+        assertTrue(DatabaseService.createsSessionState("set names utf8mb4"));
+        assertTrue(DatabaseService.createsSessionState("LOCK TABLES orders READ"));
+        assertTrue(DatabaseService.createsSessionState("PREPARE stmt FROM 'SELECT 1'"));
+        assertTrue(DatabaseService.createsSessionState("CALL refresh_stats()"));
+        assertTrue(DatabaseService.createsSessionState("SELECT @n := COUNT(*) FROM orders"));
+        assertTrue(DatabaseService.createsSessionState("SELECT COUNT(*) INTO @n FROM orders"));
+        assertTrue(DatabaseService.createsSessionState("SELECT GET_LOCK('job', 10)"));
+        assertTrue(DatabaseService.createsSessionState("SELECT LAST_INSERT_ID(42)"));
+        assertTrue(DatabaseService.createsSessionState("SELECT SQL_CALC_FOUND_ROWS * FROM orders LIMIT 10"));
+
+        assertFalse(DatabaseService.createsSessionState("SELECT * FROM orders"));
+        assertFalse(DatabaseService.createsSessionState("SELECT LAST_INSERT_ID()"));
+        assertFalse(DatabaseService.createsSessionState("UPDATE orders SET status = 1"));
+        assertFalse(DatabaseService.createsSessionState("CREATE TABLE settings (id int)"));
+    }
+
+    @Test
+    void ddlSchemasUseTheQualifierOrTheCurrentDatabase() {
+        assertEquals(schemas("shop"), DatabaseService.ddlSchemas("CREATE TABLE t (id int)", "shop", false));
+        assertEquals(schemas("db1"), DatabaseService.ddlSchemas("CREATE TABLE db1.t (id int, other_db.x int)", "shop", false));
+        assertEquals(schemas("db1"), DatabaseService.ddlSchemas("create table if not exists `db1`.`t`(id int)", "shop", false));
+        assertEquals(schemas("shop"), DatabaseService.ddlSchemas("CREATE TABLE t AS SELECT * FROM other.x", "shop", false));
+        assertEquals(schemas("shop"), DatabaseService.ddlSchemas("ALTER TABLE t ADD COLUMN c int", "shop", false));
+        assertEquals(schemas("s"), DatabaseService.ddlSchemas("CREATE INDEX i ON s.t (c)", "shop", false));
+        assertEquals(schemas("v"), DatabaseService.ddlSchemas("CREATE OR REPLACE VIEW v.x AS SELECT 1", "shop", false));
+    }
+
+    @Test
+    void dropAndRenameCanTouchSeveralSchemas() {
+        assertEquals(schemas("a", "b`x", "shop"),
+                DatabaseService.ddlSchemas("DROP TABLE a.t1, `b``x`.t2, t3", "shop", true));
+        assertEquals(schemas("x"), DatabaseService.ddlSchemas("DROP TABLE IF EXISTS x.y", "shop", true));
+        assertEquals(schemas("a", "b"), DatabaseService.ddlSchemas("RENAME TABLE a.t TO b.t", "shop", true));
+        assertEquals(Collections.singleton("shop"), DatabaseService.ddlSchemas("DROP INDEX i", "shop", true));
+    }
+}
@@ -0,0 +1,148 @@
+package com.yinta.mysqlservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.yinta.mysqlservice.config.DatabaseConfig;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.SignatureException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwtServiceTest {
+
+    private static final String SECRET = "test-session-secret-0123456789abcdef";
+
+    private ConnectionDescriptorCodec codec;
+    private InMemorySessionStore sessionStore;
+    private JwtService jwtService;
+
+    private static ConnectionDescriptorCodec codec(String secret) throws Exception {
+        ConnectionDescriptorCodec codec = new ConnectionDescriptorCodec();
+        ReflectionTestUtils.setField(codec, "secret", secret);
+        ReflectionTestUtils.setField(codec, "objectMapper", new ObjectMapper());
+        codec.init();
+        return codec;
+    }
+
+    private static JwtService jwtService(ConnectionDescriptorCodec codec, SessionStore sessionStore) {
+        JwtService jwtService = new JwtService();
+        ReflectionTestUtils.setField(jwtService, "connectionDescriptorCodec", codec);
+        ReflectionTestUtils.setField(jwtService, "sessionStore", sessionStore);
+        return jwtService;
+    }
+
+    private static DatabaseConfig config() {
+        DatabaseConfig config = new DatabaseConfig();
+        config.setHost("db1");
+        config.setPort(3306);
+        config.setUsername("app");
+        config.setPassword("secret");
+        config.setDatabase("shop");
+        return config;
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        codec = codec(SECRET);
+        sessionStore = new InMemorySessionStore();
+        jwtService = jwtService(codec, sessionStore);
+    }
+
+    private Claims claims(String token) {
+        return Jwts.parser().setSigningKey(codec.getSigningKey()).parseClaimsJws(token).getBody();
+    }
+
+    @Test
+    void anotherNodeRestoresTheConnectionFromTheToken() throws Exception {
+        String token = jwtService.generateToken("c1", config());
+
+        // 另一个节点使用相同的会话密钥, 但会话存储中没有该连接
+        InMemorySessionStore otherStore = new InMemorySessionStore();
+        JwtService otherNode = jwtService(codec(SECRET), otherStore);
+        assertEquals("c1", otherNode.getConnectionIdFromToken(token));
+        assertEquals(config(), otherStore.find("c1"));
+    }
+
+    @Test
+    void tokenSignedWithAnotherSecretIsRejected() throws Exception {
+        String token = jwtService(codec("another-session-secret-0123456789abcdef"), new InMemorySessionStore())
+                .generateToken("c1", config());
+        assertThrows(SignatureException.class, () -> jwtService.getConnectionIdFromToken(token));
+    }
+
+    @Test
+    void tamperedDescriptorIsRejected() {
+        String descriptor = codec.encrypt(config(), "c1\n100");
+        char last = descriptor.charAt(descriptor.length() - 1);
+        String tampered = descriptor.substring(0, descriptor.length() - 1) + (last == 'A' ? 'B' : 'A');
+        assertThrows(IllegalStateException.class, () -> codec.decrypt(tampered, "c1\n100"));
+    }
+
+    @Test
+    void descriptorIsBoundToConnectionIdAndExpiry() {
+        String descriptor = codec.encrypt(config(), "c1\n100");
+        assertEquals(config(), codec.decrypt(descriptor, "c1\n100"));
+        assertThrows(IllegalStateException.class, () -> codec.decrypt(descriptor, "c2\n100"));
+        assertThrows(IllegalStateException.class, () -> codec.decrypt(descriptor, "c1\n200"));
+    }
+
+    @Test
+    void descriptorCopiedIntoAnotherTokenIsRejected() {
+        Claims claims = claims(jwtService.generateToken("c1", config()));
+        // 即使能以相同的过期时间签发令牌, 换了连接ID或过期时间后描述也无法解密
+        String forgedId = Jwts.builder()
+                .claim("connectionId", "c2")
+                .claim("descriptor", claims.get("descriptor"))
+                .setExpiration(claims.getExpiration())
+                .signWith(SignatureAlgorithm.HS256, codec.getSigningKey())
+                .compact();
+        assertThrows(IllegalStateException.class, () -> jwtService.getConnectionIdFromToken(forgedId));
+        String forgedExpiry = Jwts.builder()
+                .claim("connectionId", "c1")
+                .claim("descriptor", claims.get("descriptor"))
+                .setExpiration(new Date(claims.getExpiration().getTime() + 24 * 60 * 60 * 1000L))
+                .signWith(SignatureAlgorithm.HS256, codec.getSigningKey())
+                .compact();
+        assertThrows(IllegalStateException.class, () -> jwtService.getConnectionIdFromToken(forgedExpiry));
+        assertNull(sessionStore.find("c1"));
+        assertNull(sessionStore.find("c2"));
+    }
+
+    @Test
+    void tokenWithoutExpiryIsRejected() {
+        String token = Jwts.builder()
+                .claim("connectionId", "c1")
+                .signWith(SignatureAlgorithm.HS256, codec.getSigningKey())
+                .compact();
+        assertThrows(IllegalStateException.class, () -> jwtService.getConnectionIdFromToken(token));
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        String token = Jwts.builder()
+                .claim("connectionId", "c1")
+                .setExpiration(new Date(System.currentTimeMillis() - 60 * 1000L))
+                .signWith(SignatureAlgorithm.HS256, codec.getSigningKey())
+                .compact();
+        assertThrows(ExpiredJwtException.class, () -> jwtService.getConnectionIdFromToken(token));
+    }
+
+    @Test
+    void revokedConnectionIsRejected() {
+        String token = jwtService.generateToken("c1", config());
+        jwtService.revoke("c1");
+        assertThrows(IllegalStateException.class, () -> jwtService.getConnectionIdFromToken(token));
+    }
+
+    @Test
+    void shortSecretIsRejected() {
+        assertThrows(IllegalStateException.class, () -> codec("too-short"));
+    }
+}
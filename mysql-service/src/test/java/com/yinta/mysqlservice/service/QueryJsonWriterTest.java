@@ -0,0 +1,99 @@
+package com.yinta.mysqlservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class QueryJsonWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private QueryJsonWriter writer(long maxRows) {
+        ResultMemoryBudget budget = new ResultMemoryBudget();
+        ReflectionTestUtils.setField(budget, "maxRows", maxRows);
+        ReflectionTestUtils.setField(budget, "maxBytes", 1024L * 1024);
+        QueryJsonWriter writer = new QueryJsonWriter();
+        ReflectionTestUtils.setField(writer, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(writer, "resultMemoryBudget", budget);
+        writer.init();
+        return writer;
+    }
+
+    // 列 id, name, id; 两行 (1, a, 2) 和 (3, b, 4)
+    private ResultSet duplicateColumnResultSet() throws Exception {
+        ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        when(metaData.getColumnCount()).thenReturn(3);
+        when(metaData.getColumnName(1)).thenReturn("id");
+        when(metaData.getColumnName(2)).thenReturn("name");
+        when(metaData.getColumnName(3)).thenReturn("id");
+        when(metaData.getColumnType(1)).thenReturn(Types.INTEGER);
+        when(metaData.getColumnType(2)).thenReturn(Types.VARCHAR);
+        when(metaData.getColumnType(3)).thenReturn(Types.INTEGER);
+        when(metaData.isSigned(anyInt())).thenReturn(true);
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getMetaData()).thenReturn(metaData);
+        when(rs.next()).thenReturn(true, true, false);
+        when(rs.getInt(1)).thenReturn(1, 3);
+        when(rs.getString(2)).thenReturn("a", "b");
+        when(rs.getInt(3)).thenReturn(2, 4);
+        when(rs.wasNull()).thenReturn(false);
+        return rs;
+    }
+
+    private JsonNode write(QueryJsonWriter writer, ResultSet rs) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (QueryCursor cursor = new QueryCursor(mock(Statement.class), rs, () -> { })) {
+            assertNull(writer.write(cursor, out, new OperationProgress(null)));
+        }
+        return objectMapper.readTree(out.toByteArray());
+    }
+
+    private static List<String> fieldNames(JsonNode node) {
+        List<String> names = new ArrayList<>();
+        for (Iterator<String> it = node.fieldNames(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        return names;
+    }
+
+    @Test
+    void duplicateColumnsAreWrittenOnceWithTheFirstValue() throws Exception {
+        JsonNode json = write(writer(1000), duplicateColumnResultSet());
+
+        JsonNode results = json.get("results");
+        assertEquals(2, results.size());
+        assertEquals(Arrays.asList("id", "name", "__columnOrder"), fieldNames(results.get(0)));
+        assertEquals(1, results.get(0).get("id").asInt());
+        assertEquals("a", results.get(0).get("name").asText());
+        assertEquals("[\"id\",\"name\",\"id\"]", results.get(0).get("__columnOrder").toString());
+        assertEquals(Arrays.asList("id", "name"), fieldNames(results.get(1)));
+        assertEquals(3, results.get(1).get("id").asInt());
+        assertFalse(json.get("truncated").asBoolean());
+    }
+
+    @Test
+    void stopsAtTheRowLimit() throws Exception {
+        JsonNode json = write(writer(1), duplicateColumnResultSet());
+
+        assertEquals(1, json.get("results").size());
+        assertTrue(json.get("truncated").asBoolean());
+        assertEquals("Result exceeds the row limit of 1", json.get("truncatedReason").asText());
+    }
+}
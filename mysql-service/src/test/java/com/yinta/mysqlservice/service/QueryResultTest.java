@@ -0,0 +1,119 @@
+package com.yinta.mysqlservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QueryResultTest {
+
+    @TempDir
+    Path spillDir;
+
+    private ResultMemoryBudget budget(long maxRows, long memoryThresholdBytes) {
+        ResultMemoryBudget budget = new ResultMemoryBudget();
+        ReflectionTestUtils.setField(budget, "maxRows", maxRows);
+        ReflectionTestUtils.setField(budget, "maxBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(budget, "memoryThresholdBytes", memoryThresholdBytes);
+        ReflectionTestUtils.setField(budget, "globalMemoryBytes", 64L * 1024 * 1024);
+        ReflectionTestUtils.setField(budget, "spillDir", spillDir.toString());
+        return budget;
+    }
+
+    @Test
+    void spilledRowsReadBackWithTheirTypes() throws Exception {
+        List<String> columns = Arrays.asList("s", "i", "l", "d", "f", "dec", "big", "b", "bytes",
+                "ts", "date", "time", "ldt", "ld", "lt", "nil");
+        Timestamp timestamp = Timestamp.valueOf("2024-02-29 12:34:56.123456789");
+        List<Object[]> rows = new ArrayList<>();
+        for (int n = 0; n < 3; n++) {
+            rows.add(new Object[]{"行" + n, n, 1L << 40 | n, 1.5 + n, 2.5f + n, new BigDecimal("12.50"),
+                    new BigInteger("123456789012345678901234567890"), n % 2 == 0, new byte[]{1, 2, (byte) n},
+                    timestamp, java.sql.Date.valueOf("2024-02-29"), Time.valueOf("23:59:58"),
+                    LocalDateTime.of(2024, 2, 29, 1, 2, 3, 456000000), LocalDate.of(2024, 2, 29),
+                    LocalTime.of(4, 5, 6, 789000000), null});
+        }
+
+        ResultMemoryBudget budget = budget(1000, 1);
+        QueryResult result = new QueryResult(columns, budget);
+        try {
+            for (Object[] row : rows) {
+                assertTrue(result.append(row));
+            }
+            result.finish();
+
+            assertTrue(result.isSpilled());
+            assertEquals(3, result.size());
+            for (int n = 0; n < rows.size(); n++) {
+                Map<String, Object> row = result.get(n);
+                assertEquals(columns, new ArrayList<>(row.keySet()));
+                for (int i = 0; i < columns.size(); i++) {
+                    Object expected = rows.get(n)[i];
+                    if (expected instanceof byte[]) {
+                        assertArrayEquals((byte[]) expected, (byte[]) row.get(columns.get(i)));
+                    } else {
+                        assertEquals(expected, row.get(columns.get(i)), columns.get(i));
+                    }
+                }
+            }
+        } finally {
+            result.close();
+        }
+        try (Stream<Path> files = Files.list(spillDir)) {
+            assertEquals(0, files.count());
+        }
+        assertTrue(budget.tryReserve(64L * 1024 * 1024));
+    }
+
+    @Test
+    void duplicateColumnsKeepTheFirstValue() throws Exception {
+        QueryResult result = new QueryResult(Arrays.asList("id", "name", "id"), budget(1000, 1));
+        try {
+            assertTrue(result.append(new Object[]{1, "a", 2}));
+            assertTrue(result.append(new Object[]{3, "b", 4}));
+            result.finish();
+
+            assertTrue(result.isSpilled());
+            assertEquals(Arrays.asList("id", "name"), new ArrayList<>(result.get(0).keySet()));
+            assertEquals(1, result.get(0).get("id"));
+            assertEquals(Arrays.asList("id", "name"), new ArrayList<>(result.get(1).keySet()));
+            assertEquals(3, result.get(1).get("id"));
+            assertEquals("b", result.get(1).get("name"));
+        } finally {
+            result.close();
+        }
+    }
+
+    @Test
+    void stopsAtTheRowLimit() throws Exception {
+        QueryResult result = new QueryResult(Arrays.asList("id"), budget(2, 1024 * 1024));
+        try {
+            assertTrue(result.append(new Object[]{1}));
+            assertTrue(result.append(new Object[]{2}));
+            assertFalse(result.append(new Object[]{3}));
+            result.finish();
+
+            assertFalse(result.isSpilled());
+            assertEquals(2, result.size());
+            assertTrue(result.isTruncated());
+        } finally {
+            result.close();
+        }
+    }
+}
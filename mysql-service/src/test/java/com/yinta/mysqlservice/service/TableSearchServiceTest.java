@@ -0,0 +1,100 @@
+package com.yinta.mysqlservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TableSearchServiceTest {
+
+    private DatabaseService databaseService;
+    private TableSearchService searchService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        List<Map<String, Object>> tables = new ArrayList<>();
+        for (String name : Arrays.asList("shop.orders", "shop.order_items", "shop.customer_orders", "shop.users",
+                "shop.reorder", "orderdb.invoices", "Inventory.ITEMS")) {
+            String[] parts = name.split("\\.");
+            Map<String, Object> table = new HashMap<>();
+            table.put("schema", parts[0]);
+            table.put("table", parts[1]);
+            table.put("rows", 10L);
+            table.put("dataLength", 16384L);
+            tables.add(table);
+        }
+        databaseService = mock(DatabaseService.class);
+        when(databaseService.getServerKey("c1")).thenReturn("root@db1:3306");
+        when(databaseService.getTableStatistics("c1", null)).thenReturn(tables);
+
+        searchService = new TableSearchService();
+        ReflectionTestUtils.setField(searchService, "databaseService", databaseService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchService.shutdown();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> search(String query, int limit) throws Exception {
+        List<String> names = new ArrayList<>();
+        for (Map<String, Object> result : (List<Map<String, Object>>) searchService.search("c1", query, limit).get("results")) {
+            names.add(result.get("schema") + "." + result.get("table") + ":" + result.get("score"));
+        }
+        return names;
+    }
+
+    @Test
+    void ranksPrefixWordPrefixSubstringThenSchema() throws Exception {
+        assertEquals(Arrays.asList("shop.orders:80", "shop.order_items:80", "shop.customer_orders:60",
+                "shop.reorder:40", "orderdb.invoices:20"), search("order", 50));
+        assertEquals(Arrays.asList("shop.orders:100", "shop.customer_orders:60"), search("orders", 50));
+        // 少于三个字符的子串不走三字母组, 逐条比较
+        assertEquals(Arrays.asList("shop.users:80", "shop.customer_orders:40"), search("us", 50));
+        // 索引只建立一次
+        verify(databaseService, times(1)).getTableStatistics("c1", null);
+    }
+
+    @Test
+    void qualifiedQueryFiltersBySchemaPrefix() throws Exception {
+        assertEquals(Arrays.asList("shop.order_items:80"), search("sh.order_", 50));
+        assertEquals(Arrays.asList("shop.users:20", "shop.orders:20", "shop.reorder:20",
+                "shop.order_items:20", "shop.customer_orders:20"), search("shop.", 50));
+        assertEquals(Arrays.asList("orderdb.invoices:80", "Inventory.ITEMS:20"), search("INV", 50));
+    }
+
+    @Test
+    void matchesCaseInsensitivelyWhateverTheDefaultLocale() throws Exception {
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            assertEquals(Arrays.asList("Inventory.ITEMS:100", "shop.order_items:60"), search("items", 50));
+            assertEquals(Arrays.asList("Inventory.ITEMS:100", "shop.order_items:60"), search("ITEMS", 50));
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    void limitsResultsButReportsTheTotal() throws Exception {
+        Map<String, Object> response = searchService.search("c1", "order", 2);
+        assertEquals(5, response.get("total"));
+        assertEquals(2, ((List<?>) response.get("results")).size());
+        assertTrue(search("order", -1).isEmpty());
+        verify(databaseService, times(1)).getTableStatistics("c1", null);
+    }
+}